@@ -0,0 +1,204 @@
+// ***********************************************************************
+// HeadingController
+// ***********************************************************************
+// Closed loop (PID) control of the robot heading.
+//
+// Given a target heading and the current heading (degrees), works out how hard to turn.
+//      - P turns harder the further we are from the target
+//      - I slowly adds more turn if we are stuck just short of the target
+//      - D slows the turn as we close in, so we do not overshoot. It uses the rate the
+//        heading is changing (not the error), and is filtered, since the IMU is a bit noisy
+//      - F is a minimum turn to get past the friction of the wheels on the tiles
+// The output is limited, and the turn is "settled" once the heading has stayed inside the
+// tolerance, turning slowly, for the settle time.
+//
+// The output is positive when the target is more positive than the heading. The drive code
+// turns the other way for a positive turn, so callers flip the sign.
+
+package org.firstinspires.ftc.teamcode;
+
+// ***********************************************************************
+// HeadingController
+// ***********************************************************************
+// Class definitions
+public class HeadingController {
+
+    // gains
+    private double kP;
+    private double kI;
+    private double kD;
+    private double kF;
+
+    // largest turn output, and the most the integral may add
+    private double outputLimit;
+    private double integralLimit;
+    // derivative filter, 0 (no filter) to just under 1 (heavy filter)
+    private double derivativeFilter;
+
+    // settled when within tolerance (degrees), turning slower than settle rate (degrees/sec),
+    // for the settle time (ms)
+    private double tolerance;
+    private double settleRate;
+    private double settleTimeMs;
+
+    // running state
+    private double integral;
+    private double rate;
+    private double lastHeading;
+    private double lastError;
+    private double lastOutput;
+    private long lastTime;
+    private long settleStart;
+    private boolean settled;
+
+    // ***********************************************************************
+    // HeadingController - create a controller with the given gains
+    // ***********************************************************************
+    public HeadingController( double useKP, double useKI, double useKD, double useKF,
+                              double useOutputLimit ) {
+        setGains( useKP, useKI, useKD, useKF );
+        outputLimit = useOutputLimit;
+        integralLimit = useOutputLimit / 2;
+        derivativeFilter = 0.7;
+        tolerance = 3.0;
+        settleRate = 10.0;
+        settleTimeMs = 100;
+
+        reset();
+    }
+
+    // ***********************************************************************
+    // settings
+    // ***********************************************************************
+    public void setGains( double newKP, double newKI, double newKD, double newKF ) {
+        kP = newKP;
+        kI = newKI;
+        kD = newKD;
+        kF = newKF;
+    }
+    public void setOutputLimit( double newLimit ) {
+        outputLimit = newLimit;
+        integralLimit = newLimit / 2;
+    }
+    public void setDerivativeFilter( double newFilter ) {
+        derivativeFilter = newFilter;
+    }
+    public void setSettle( double newTolerance, double newSettleRate, double newSettleTimeMs ) {
+        tolerance = newTolerance;
+        settleRate = newSettleRate;
+        settleTimeMs = newSettleTimeMs;
+    }
+
+    // ***********************************************************************
+    // reset - forget the past, for a new turn
+    // ***********************************************************************
+    public void reset() {
+        integral = 0;
+        rate = 0;
+        lastOutput = 0;
+        lastError = 0;
+        lastTime = 0;
+        settleStart = 0;
+        settled = false;
+    }
+
+    // ***********************************************************************
+    // update - work out the turn for this pass
+    // ***********************************************************************
+    public double update( double targetHeading, double heading ) {
+        return update( targetHeading, heading, System.nanoTime() );
+    }
+
+    // the same, at a given time (System.nanoTime) - for running on a simulated clock
+    double update( double targetHeading, double heading, long now ) {
+        double dt;
+        double error;
+        double output;
+
+        // shortest way around to the target
+        error = normalize180( targetHeading - heading );
+
+        if ( lastTime == 0 ) {
+            // first pass, no time step yet for I or D
+            dt = 0;
+            rate = 0;
+        } else {
+            dt = ( now - lastTime ) / 1e9;
+            if ( dt > 0 ) {
+                // filtered heading rate - the measurement, so a new target does not kick
+                rate = ( derivativeFilter * rate )
+                        + (( 1 - derivativeFilter ) * normalize180( heading - lastHeading ) / dt );
+            }
+        }
+        lastTime = now;
+        lastHeading = heading;
+        lastError = error;
+
+        // integral, only once we are close, and kept within its limit
+        if ( Math.abs( error ) < 4 * tolerance ) {
+            integral += kI * error * dt;
+            integral = clip( integral, integralLimit );
+        } else {
+            integral = 0;
+        }
+
+        output = ( kP * error ) + integral - ( kD * rate );
+
+        // minimum push to overcome friction, unless we are already there
+        if ( Math.abs( error ) > tolerance ) {
+            output += ( error > 0 ) ? kF : -kF;
+        }
+        output = clip( output, outputLimit );
+
+        // check for settled
+        if (( Math.abs( error ) <= tolerance ) && ( Math.abs( rate ) <= settleRate )) {
+            if ( settleStart == 0 ) {
+                settleStart = now;
+            }
+            settled = (( now - settleStart ) / 1e6 ) >= settleTimeMs;
+        } else {
+            settleStart = 0;
+            settled = false;
+        }
+
+        lastOutput = output;
+        return output;
+    }
+
+    // ***********************************************************************
+    // state for callers
+    // ***********************************************************************
+    public boolean isSettled() {
+        return settled;
+    }
+    public double getError() {
+        return lastError;
+    }
+    public double getRate() {
+        return rate;
+    }
+    public double getOutput() {
+        return lastOutput;
+    }
+
+    // ***********************************************************************
+    // normalize180 - angle to -180 to 180
+    // ***********************************************************************
+    static double normalize180( double angle ) {
+        double angle180 = angle - ( FastMath.floor( angle / 360.0 ) * 360.0 );
+        if ( angle180 > 180.0 ) {
+            angle180 -= 360.0;
+        }
+        return angle180;
+    }
+
+    private static double clip( double value, double limit ) {
+        if ( value > limit ) {
+            return limit;
+        }
+        if ( value < -limit ) {
+            return -limit;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,237 @@
+// ***********************************************************************
+// MotionProfile
+// ***********************************************************************
+// Speed plan for one straight move, so the robot speeds up and slows down smoothly.
+//
+// generate() works out the whole move at once, as speed and distance at even time steps, and
+// saves it in plain arrays. While driving, speedAt() looks up the planned speed for the distance
+// gone so far (a binary search), so each loop does no real math.
+//
+//      - with no jerk limit the plan is a trapezoid: speed up at maxAccel, cruise at maxSpeed,
+//        slow down at maxAccel (a triangle if the move is too short to reach maxSpeed)
+//      - with a jerk limit, the trapezoid speeds are averaged over the time it takes to reach
+//        maxAccel (maxAccel / maxJerk, twice that if there is little or no cruise). That rounds
+//        off the corners into an S-curve, keeps the acceleration under maxAccel and the jerk
+//        under maxJerk, and covers the same distance.
+//
+// The arrays are made once, so a new plan for each move does not create objects.
+// Units are up to the caller (we use cm and seconds).
+
+package org.firstinspires.ftc.teamcode;
+
+// ***********************************************************************
+// MotionProfile
+// ***********************************************************************
+// Class definitions
+public class MotionProfile {
+
+    // the plan, at even time steps
+    private final double[] times;
+    private final double[] positions;
+    private final double[] speeds;
+    private int count;
+
+    // what the plan was made for
+    private double distance;
+    private double totalTime;
+    private double peakSpeed;
+
+    // trapezoid shape, used while generating
+    private double trapAccel;
+    private double trapPeak;
+    private double trapAccelTime;
+    private double trapCruiseTime;
+
+    // ***********************************************************************
+    // MotionProfile - room for a plan of this many steps
+    // ***********************************************************************
+    public MotionProfile( int size ) {
+        if ( size < 2 ) {
+            size = 2;
+        }
+        times = new double[ size ];
+        positions = new double[ size ];
+        speeds = new double[ size ];
+        count = 0;
+    }
+
+    // ***********************************************************************
+    // generate - plan a move of this distance, starting and ending stopped
+    // ***********************************************************************
+    // maxJerk of 0 (or less) gives a plain trapezoid.
+    public void generate( double moveDistance, double maxSpeed, double maxAccel, double maxJerk ) {
+        double jerkTime;
+        double step;
+        double t;
+        int i;
+
+        distance = Math.abs( moveDistance );
+        count = times.length;
+        if (( distance <= 0 ) || ( maxSpeed <= 0 ) || ( maxAccel <= 0 )) {
+            // nothing to plan
+            distance = 0;
+            totalTime = 0;
+            peakSpeed = 0;
+            for ( i = 0; i < count; i++ ) {
+                times[ i ] = 0;
+                positions[ i ] = 0;
+                speeds[ i ] = 0;
+            }
+            return;
+        }
+
+        // the trapezoid - or a triangle if we cannot reach full speed
+        trapAccel = maxAccel;
+        trapPeak = maxSpeed;
+        if ( distance < ( maxSpeed * maxSpeed / maxAccel )) {
+            trapPeak = FastMath.sqrt( distance * maxAccel );
+        }
+        trapAccelTime = trapPeak / trapAccel;
+        trapCruiseTime = ( distance - ( trapPeak * trapAccelTime )) / trapPeak;
+
+        // averaging time for the S-curve
+        jerkTime = ( maxJerk > 0 ) ? ( maxAccel / maxJerk ) : 0;
+        // with little or no cruise, speeding up and slowing down fall in one averaging window -
+        // the acceleration then swings from +maxAccel to -maxAccel, so average over twice as long
+        if ( trapCruiseTime < jerkTime ) {
+            jerkTime *= 2;
+        }
+
+        totalTime = ( 2 * trapAccelTime ) + trapCruiseTime + jerkTime;
+        step = totalTime / ( count - 1 );
+
+        // speeds at each step
+        peakSpeed = 0;
+        for ( i = 0; i < count; i++ ) {
+            t = i * step;
+            times[ i ] = t;
+            if ( jerkTime > 0 ) {
+                speeds[ i ] = ( trapPosition( t ) - trapPosition( t - jerkTime )) / jerkTime;
+            } else {
+                speeds[ i ] = trapSpeed( t );
+            }
+            if ( speeds[ i ] > peakSpeed ) {
+                peakSpeed = speeds[ i ];
+            }
+        }
+        speeds[ 0 ] = 0;
+        speeds[ count - 1 ] = 0;
+
+        // distances, adding up the speeds
+        positions[ 0 ] = 0;
+        for ( i = 1; i < count; i++ ) {
+            positions[ i ] = positions[ i - 1 ] + ( 0.5 * ( speeds[ i - 1 ] + speeds[ i ] ) * step );
+        }
+        // take out the small adding up error, so the plan ends right at the distance
+        if ( positions[ count - 1 ] > 0 ) {
+            t = distance / positions[ count - 1 ];
+            for ( i = 1; i < count; i++ ) {
+                positions[ i ] *= t;
+            }
+        }
+    }
+
+    // ***********************************************************************
+    // speedAt - planned speed once we have gone this far
+    // ***********************************************************************
+    // The plan starts and ends at 0, so the caller needs some minimum speed to get going.
+    // Past the end of the move the speed is 0.
+    public double speedAt( double travelled ) {
+        int low;
+        int high;
+        int mid;
+        double fraction;
+
+        if (( count == 0 ) || ( travelled >= distance )) {
+            return 0;
+        }
+        if ( travelled <= 0 ) {
+            return speeds[ 0 ];
+        }
+
+        // last step at or before the distance
+        low = 0;
+        high = count - 1;
+        while ( high - low > 1 ) {
+            mid = ( low + high ) >>> 1;
+            if ( positions[ mid ] <= travelled ) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        if ( positions[ high ] <= positions[ low ] ) {
+            return speeds[ low ];
+        }
+        fraction = ( travelled - positions[ low ] ) / ( positions[ high ] - positions[ low ] );
+        return speeds[ low ] + (( speeds[ high ] - speeds[ low ] ) * fraction );
+    }
+
+    // ***********************************************************************
+    // speedAtTime - planned speed this long into the move
+    // ***********************************************************************
+    public double speedAtTime( double t ) {
+        int i;
+        double fraction;
+
+        if (( count == 0 ) || ( t <= 0 ) || ( t >= totalTime )) {
+            return 0;
+        }
+        fraction = t / totalTime * ( count - 1 );
+        i = (int) fraction;
+        fraction -= i;
+        return speeds[ i ] + (( speeds[ i + 1 ] - speeds[ i ] ) * fraction );
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+    public double getTotalTime() {
+        return totalTime;
+    }
+    public double getPeakSpeed() {
+        return peakSpeed;
+    }
+
+    // ***********************************************************************
+    // trapezoid speed and distance at a time
+    // ***********************************************************************
+    private double trapSpeed( double t ) {
+        double decelStart = trapAccelTime + trapCruiseTime;
+
+        if ( t <= 0 ) {
+            return 0;
+        }
+        if ( t < trapAccelTime ) {
+            return trapAccel * t;
+        }
+        if ( t < decelStart ) {
+            return trapPeak;
+        }
+        if ( t < decelStart + trapAccelTime ) {
+            return trapPeak - ( trapAccel * ( t - decelStart ));
+        }
+        return 0;
+    }
+
+    private double trapPosition( double t ) {
+        double decelStart = trapAccelTime + trapCruiseTime;
+        double accelDist = 0.5 * trapPeak * trapAccelTime;
+        double td;
+
+        if ( t <= 0 ) {
+            return 0;
+        }
+        if ( t < trapAccelTime ) {
+            return 0.5 * trapAccel * t * t;
+        }
+        if ( t < decelStart ) {
+            return accelDist + ( trapPeak * ( t - trapAccelTime ));
+        }
+        if ( t < decelStart + trapAccelTime ) {
+            td = t - decelStart;
+            return accelDist + ( trapPeak * trapCruiseTime ) + ( trapPeak * td ) - ( 0.5 * trapAccel * td * td );
+        }
+        return distance;
+    }
+}
@@ -0,0 +1,332 @@
+// ***********************************************************************
+// PathFollower
+// ***********************************************************************
+// Drives a list of field waypoints in one go (pure pursuit), without stopping at each one.
+//
+// The path is straight lines between waypoints. Each waypoint has the robot heading to turn to
+// on the way there, and the top speed to use getting there. Each update, with the robot pose:
+//      - the robot is placed on the path (the closest point on the line it is on), and moves on
+//        to the next line once it is closer to that one, or past the end of this one
+//      - the target is the point a lookahead distance further along the path. The robot drives
+//        straight at it, so it cuts a little inside the corners and steers back onto the line
+//        if it gets pushed off
+//      - the speed is the lowest of: the leg top speed, what we can reach from the start at
+//        maxAccel, and what still lets us slow down at maxAccel for the corners ahead and the end
+// A swerve drive can move in any direction while it turns, so the heading is handled on its own.
+//
+// Corners slow down more the sharper they are. The corner speeds are worked out once, in start().
+//
+// Units are cm and cm/sec, directions in degrees the same as autoDrive and Pose2d.
+// The arrays are made once, so a new path does not create objects.
+
+package org.firstinspires.ftc.teamcode;
+
+// ***********************************************************************
+// PathFollower
+// ***********************************************************************
+// Class definitions
+public class PathFollower {
+
+    static final double DEG2RAD = ( Math.PI / 180 );
+    // slowest we take a corner, as a share of the leg speed
+    static final double MIN_CORNER_RATIO = 0.25;
+
+    // the waypoints
+    private final double[] pointX;
+    private final double[] pointY;
+    private final double[] pointHeading;
+    private final double[] pointSpeed;
+    // distance along the path to each waypoint, and the speed to be at each one
+    private final double[] pathPos;
+    private final double[] cornerSpeed;
+    private int count;
+
+    // how far ahead to aim (cm), speed change (cm/sec/sec), and how close is done (cm)
+    private double lookahead;
+    private double maxAccel;
+    private double endTolerance;
+
+    // following state
+    private int segment;
+    private boolean done;
+    private double progress;
+    private double remaining;
+    private double moveAngle;
+    private double moveSpeed;
+    private double targetHeading;
+
+    // ***********************************************************************
+    // PathFollower - room for a path of this many waypoints
+    // ***********************************************************************
+    public PathFollower( int size ) {
+        if ( size < 2 ) {
+            size = 2;
+        }
+        pointX = new double[ size ];
+        pointY = new double[ size ];
+        pointHeading = new double[ size ];
+        pointSpeed = new double[ size ];
+        pathPos = new double[ size ];
+        cornerSpeed = new double[ size ];
+
+        setLimits( 20, 200, 3 );
+        clear();
+    }
+
+    public void setLimits( double newLookahead, double newMaxAccel, double newEndTolerance ) {
+        lookahead = newLookahead;
+        maxAccel = newMaxAccel;
+        endTolerance = newEndTolerance;
+    }
+
+    // ***********************************************************************
+    // building the path
+    // ***********************************************************************
+    public void clear() {
+        count = 0;
+        done = true;
+    }
+
+    // waypoint at x, y - turning to heading and at up to speed on the way there
+    // returns false if the path is full
+    public boolean addPoint( double x, double y, double heading, double speed ) {
+        if ( count >= pointX.length ) {
+            return false;
+        }
+        pointX[ count ] = x;
+        pointY[ count ] = y;
+        pointHeading[ count ] = heading;
+        pointSpeed[ count ] = speed;
+        if ( count == 0 ) {
+            pathPos[ count ] = 0;
+        } else {
+            pathPos[ count ] = pathPos[ count - 1 ]
+                    + FastMath.sqrt( FastMath.pow2( x - pointX[ count - 1 ] ) + FastMath.pow2( y - pointY[ count - 1 ] ));
+        }
+        count++;
+        return true;
+    }
+
+    // waypoint dist away from the last one, in direction angle (same as autoDrive)
+    public boolean addLeg( double angle, double dist, double heading, double speed ) {
+        if ( count == 0 ) {
+            return false;
+        }
+        return addPoint( pointX[ count - 1 ] + ( dist * FastMath.sin( angle * DEG2RAD )),
+                pointY[ count - 1 ] + ( dist * FastMath.cos( angle * DEG2RAD )), heading, speed );
+    }
+
+    public int getCount() {
+        return count;
+    }
+    public double getLength() {
+        return ( count > 0 ) ? pathPos[ count - 1 ] : 0;
+    }
+    // waypoint i, as it was added
+    public double getX( int i ) {
+        return pointX[ i ];
+    }
+    public double getY( int i ) {
+        return pointY[ i ];
+    }
+    public double getHeading( int i ) {
+        return pointHeading[ i ];
+    }
+    public double getSpeed( int i ) {
+        return pointSpeed[ i ];
+    }
+    // top speed of any leg
+    public double getMaxSpeed() {
+        double top = 0;
+        int i;
+
+        for ( i = 1; i < count; i++ ) {
+            if ( pointSpeed[ i ] > top ) {
+                top = pointSpeed[ i ];
+            }
+        }
+        return top;
+    }
+
+    // ***********************************************************************
+    // start - get ready to follow the path from the first waypoint
+    // ***********************************************************************
+    public void start() {
+        double turn;
+        double legIn;
+        double legOut;
+        double stopSpeed;
+        int i;
+
+        segment = 0;
+        progress = 0;
+        remaining = getLength();
+        moveSpeed = 0;
+        done = ( count < 2 );
+        if ( done ) {
+            return;
+        }
+        moveAngle = legDirection( 0 );
+        targetHeading = pointHeading[ 1 ];
+
+        // corner speeds, slower for sharper corners - and stopped at the end
+        cornerSpeed[ 0 ] = 0;
+        cornerSpeed[ count - 1 ] = 0;
+        for ( i = 1; i < count - 1; i++ ) {
+            legIn = legDirection( i - 1 );
+            legOut = legDirection( i );
+            turn = Math.abs( HeadingController.normalize180( legOut - legIn )) * DEG2RAD;
+            cornerSpeed[ i ] = Math.min( pointSpeed[ i ], pointSpeed[ i + 1 ] )
+                    * Math.max( FastMath.cos( turn ), MIN_CORNER_RATIO );
+        }
+
+        // and slow enough going in to each corner to make the next one
+        for ( i = count - 2; i > 0; i-- ) {
+            stopSpeed = FastMath.sqrt( FastMath.pow2( cornerSpeed[ i + 1 ] )
+                    + ( 2 * maxAccel * ( pathPos[ i + 1 ] - pathPos[ i ] )));
+            if ( stopSpeed < cornerSpeed[ i ] ) {
+                cornerSpeed[ i ] = stopSpeed;
+            }
+        }
+    }
+
+    // ***********************************************************************
+    // update - where to drive next, from the robot pose
+    // ***********************************************************************
+    // Returns true once the end of the path is reached.
+    public boolean update( Pose2d pose ) {
+        double along;
+        double target;
+        double targetX;
+        double targetY;
+        double legEnd;
+        int last;
+        int i;
+
+        if ( done ) {
+            moveSpeed = 0;
+            return true;
+        }
+        last = count - 2;
+
+        // move on to the next leg once we are past this one, or closer to the next
+        along = legFraction( segment, pose );
+        while (( segment < last )
+                && (( along >= 1 ) || ( legDistance( segment + 1, pose ) < legDistance( segment, pose )))) {
+            segment++;
+            along = legFraction( segment, pose );
+        }
+        if ( along < 0 ) {
+            along = 0;
+        }
+
+        // how far along the path we are, and what is left
+        progress = pathPos[ segment ] + ( along * ( pathPos[ segment + 1 ] - pathPos[ segment ] ));
+        if ( segment == last ) {
+            remaining = FastMath.sqrt( FastMath.pow2( pointX[ count - 1 ] - pose.x )
+                    + FastMath.pow2( pointY[ count - 1 ] - pose.y ));
+        } else {
+            remaining = getLength() - progress;
+        }
+        if (( remaining <= endTolerance ) || (( segment == last ) && ( along >= 1 ))) {
+            done = true;
+            moveSpeed = 0;
+            return true;
+        }
+
+        // lookahead point, along the path (never past the end)
+        target = progress + lookahead;
+        i = segment;
+        while (( i < last ) && ( target > pathPos[ i + 1 ] )) {
+            i++;
+        }
+        legEnd = pathPos[ i + 1 ] - pathPos[ i ];
+        along = ( legEnd > 0 ) ? ( target - pathPos[ i ] ) / legEnd : 1;
+        if ( along > 1 ) {
+            along = 1;
+        }
+        targetX = pointX[ i ] + ( along * ( pointX[ i + 1 ] - pointX[ i ] ));
+        targetY = pointY[ i ] + ( along * ( pointY[ i + 1 ] - pointY[ i ] ));
+
+        // drive straight at it
+        moveAngle = FastMath.toDegrees( FastMath.atan2( targetX - pose.x, targetY - pose.y ));
+        targetHeading = pointHeading[ segment + 1 ];
+
+        // leg speed, limited by speeding up from the start and slowing for what is ahead
+        moveSpeed = Math.min( pointSpeed[ segment + 1 ], FastMath.sqrt( 2 * maxAccel * progress ));
+        if ( segment == last ) {
+            legEnd = remaining;
+        } else {
+            legEnd = pathPos[ segment + 1 ] - progress;
+        }
+        moveSpeed = Math.min( moveSpeed, FastMath.sqrt( FastMath.pow2( cornerSpeed[ segment + 1 ] )
+                + ( 2 * maxAccel * legEnd )));
+        return false;
+    }
+
+    // ***********************************************************************
+    // results of the last update
+    // ***********************************************************************
+    public boolean isDone() {
+        return done;
+    }
+    // field direction to drive (degrees)
+    public double getMoveAngle() {
+        return moveAngle;
+    }
+    // speed to drive (cm/sec)
+    public double getMoveSpeed() {
+        return moveSpeed;
+    }
+    // heading to turn to (degrees)
+    public double getTargetHeading() {
+        return targetHeading;
+    }
+    public double getRemaining() {
+        return remaining;
+    }
+    public int getSegment() {
+        return segment;
+    }
+
+    public String getLog() {
+        if ( count < 2 ) {
+            return "Path: (none)";
+        }
+        return String.format( "Path: leg %d/%d  left %6.1f  dir %6.1f  v %5.1f%s", segment + 1, count - 1,
+                remaining, moveAngle, moveSpeed, done ? "  DONE" : "" );
+    }
+
+    // ***********************************************************************
+    // leg helpers
+    // ***********************************************************************
+    // direction of leg i (from waypoint i to i + 1), degrees
+    private double legDirection( int i ) {
+        return FastMath.toDegrees( FastMath.atan2( pointX[ i + 1 ] - pointX[ i ], pointY[ i + 1 ] - pointY[ i ] ));
+    }
+
+    // how far along leg i the pose is, 0 at its start and 1 at its end (not limited)
+    private double legFraction( int i, Pose2d pose ) {
+        double legX = pointX[ i + 1 ] - pointX[ i ];
+        double legY = pointY[ i + 1 ] - pointY[ i ];
+        double length2 = ( legX * legX ) + ( legY * legY );
+
+        if ( length2 <= 0 ) {
+            return 1;
+        }
+        return ((( pose.x - pointX[ i ] ) * legX ) + (( pose.y - pointY[ i ] ) * legY )) / length2;
+    }
+
+    // distance from the pose to leg i
+    private double legDistance( int i, Pose2d pose ) {
+        double along = legFraction( i, pose );
+
+        if ( along < 0 ) {
+            along = 0;
+        } else if ( along > 1 ) {
+            along = 1;
+        }
+        return FastMath.sqrt( FastMath.pow2( pointX[ i ] + ( along * ( pointX[ i + 1 ] - pointX[ i ] )) - pose.x )
+                + FastMath.pow2( pointY[ i ] + ( along * ( pointY[ i + 1 ] - pointY[ i ] )) - pose.y ));
+    }
+}
@@ -0,0 +1,48 @@
+// ***********************************************************************
+// Pose2d
+// ***********************************************************************
+// Where the robot is on the field: X and Y (cm) and heading (degrees).
+//
+// Field directions match autoDrive - an angle of 0 is along +Y, and angles grow toward +X, the
+// same as the heading. A pose is changed in place, so tracking it does not create objects.
+
+package org.firstinspires.ftc.teamcode;
+
+// ***********************************************************************
+// Pose2d
+// ***********************************************************************
+// Class definitions
+public class Pose2d {
+    public double x;
+    public double y;
+    public double heading;
+
+    public Pose2d() {
+    }
+
+    public Pose2d( double newX, double newY, double newHeading ) {
+        set( newX, newY, newHeading );
+    }
+
+    public void set( double newX, double newY, double newHeading ) {
+        x = newX;
+        y = newY;
+        heading = newHeading;
+    }
+
+    public void set( Pose2d other ) {
+        x = other.x;
+        y = other.y;
+        heading = other.heading;
+    }
+
+    // straight line distance (cm) to another pose
+    public double distanceTo( Pose2d other ) {
+        return FastMath.sqrt( FastMath.pow2( other.x - x ) + FastMath.pow2( other.y - y ));
+    }
+
+    @Override
+    public String toString() {
+        return String.format( "X %7.1f  Y %7.1f  H %6.1f", x, y, heading );
+    }
+}
@@ -0,0 +1,142 @@
+// ***********************************************************************
+// PoseHistory
+// ***********************************************************************
+// The last few seconds of robot poses, each with the time it was measured.
+//
+// Something that looked at the field a little while ago (a camera frame, for example) needs to
+// know where the robot was then, not where it is now. This keeps a fixed number of poses in a
+// ring of plain arrays, and poseAt() works out the pose at any time in between by interpolating
+// between the two poses either side of it.
+//
+// Times are System.nanoTime(). All methods are synchronized, so poses can be added from the
+// tracking thread while the loop reads them.
+
+package org.firstinspires.ftc.teamcode;
+
+// ***********************************************************************
+// PoseHistory
+// ***********************************************************************
+// Class definitions
+public class PoseHistory {
+
+    // the ring - next is where the next pose goes, count is how many are stored
+    private final long[] times;
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] headings;
+    private int next;
+    private int count;
+
+    // ***********************************************************************
+    // PoseHistory - room for this many poses
+    // ***********************************************************************
+    public PoseHistory( int size ) {
+        times = new long[ size ];
+        xs = new double[ size ];
+        ys = new double[ size ];
+        headings = new double[ size ];
+        clear();
+    }
+
+    public synchronized void clear() {
+        next = 0;
+        count = 0;
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    // ***********************************************************************
+    // add - save a pose, dropping the oldest once full
+    // ***********************************************************************
+    // Times must not go backwards.
+    public synchronized void add( long timeNanos, double x, double y, double heading ) {
+        times[ next ] = timeNanos;
+        xs[ next ] = x;
+        ys[ next ] = y;
+        headings[ next ] = heading;
+
+        next = ( next + 1 ) % times.length;
+        if ( count < times.length ) {
+            count++;
+        }
+    }
+    public void add( long timeNanos, Pose2d pose ) {
+        add( timeNanos, pose.x, pose.y, pose.heading );
+    }
+
+    // ***********************************************************************
+    // latest - the newest pose
+    // ***********************************************************************
+    // Returns the time of the pose, or 0 if there is none yet.
+    public synchronized long latest( Pose2d out ) {
+        int newest;
+
+        if ( count == 0 ) {
+            return 0;
+        }
+        newest = slot( count - 1 );
+        out.set( xs[ newest ], ys[ newest ], headings[ newest ] );
+        return times[ newest ];
+    }
+
+    // ***********************************************************************
+    // poseAt - where the robot was at a given time
+    // ***********************************************************************
+    // Times before the oldest pose or after the newest get that pose.
+    // Returns false (and leaves out alone) if there are no poses yet.
+    public synchronized boolean poseAt( long timeNanos, Pose2d out ) {
+        int low;
+        int high;
+        int mid;
+        int before;
+        int after;
+        double fraction;
+
+        if ( count == 0 ) {
+            return false;
+        }
+
+        // outside what we have
+        if ( timeNanos - times[ slot( 0 ) ] <= 0 ) {
+            copyOut( slot( 0 ), out );
+            return true;
+        }
+        if ( timeNanos - times[ slot( count - 1 ) ] >= 0 ) {
+            copyOut( slot( count - 1 ), out );
+            return true;
+        }
+
+        // binary search for the last pose at or before the time (oldest is 0)
+        low = 0;
+        high = count - 1;
+        while ( high - low > 1 ) {
+            mid = ( low + high ) >>> 1;
+            if ( times[ slot( mid ) ] - timeNanos <= 0 ) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        before = slot( low );
+        after = slot( high );
+
+        fraction = (double)( timeNanos - times[ before ] ) / (double)( times[ after ] - times[ before ] );
+        out.x = xs[ before ] + (( xs[ after ] - xs[ before ] ) * fraction );
+        out.y = ys[ before ] + (( ys[ after ] - ys[ before ] ) * fraction );
+        // heading the short way around
+        out.heading = headings[ before ]
+                + ( HeadingController.normalize180( headings[ after ] - headings[ before ] ) * fraction );
+        return true;
+    }
+
+    // ring slot for the n'th oldest pose
+    private int slot( int n ) {
+        return ( next - count + n + times.length ) % times.length;
+    }
+
+    private void copyOut( int s, Pose2d out ) {
+        out.set( xs[ s ], ys[ s ], headings[ s ] );
+    }
+}
@@ -0,0 +1,165 @@
+// ***********************************************************************
+// SampleFusion
+// ***********************************************************************
+// Works out where the gold mineral is on the field from the camera sightings.
+//
+// Each sighting gives the angle from the camera to the gold, and the time its frame was taken.
+// With the robot pose at that time (from the pose history) the sighting becomes a line on the
+// field from the robot toward the gold. The samples are about sampleRange from where we look at
+// them, so the gold is put that far along the line and kept (the newest MAX_SIGHTINGS of them).
+//
+// The sightings only fine tune the turn the vote already picked. Later, from wherever the robot
+// is, approachHeading() is given the heading for the voted sample. Sightings whose heading is
+// not within agreeWindow of it are false hits (or another mineral) and are left out. The rest
+// give a weighted median heading, so a stray sighting cannot drag it between two minerals - and
+// if the median is more than maxCorrection from the voted heading, the voted heading is used.
+
+package org.firstinspires.ftc.teamcode;
+
+// ***********************************************************************
+// SampleFusion
+// ***********************************************************************
+// Class definitions
+public class SampleFusion {
+
+    static final double DEG2RAD = ( Math.PI / 180 );
+    static final int MAX_SIGHTINGS = 64;
+
+    // camera direction compared to the robot heading (degrees)
+    private final double cameraOffset;
+    // about how far (cm) the samples are from where we look at them
+    private final double sampleRange;
+    // intake direction compared to the robot heading (degrees)
+    private final double intakeOffset;
+    // sightings this close (degrees) to the voted heading count, and the most they may move it
+    private final double agreeWindow;
+    private final double maxCorrection;
+
+    // the gold positions, oldest overwritten first
+    private final double[] goldX = new double[ MAX_SIGHTINGS ];
+    private final double[] goldY = new double[ MAX_SIGHTINGS ];
+    private final double[] goldWeight = new double[ MAX_SIGHTINGS ];
+    private int sightingCount;
+    private int nextSighting;
+
+    // for the median - headings and weights of the agreeing sightings, sorted
+    private final double[] agreeHeading = new double[ MAX_SIGHTINGS ];
+    private final double[] agreeWeight = new double[ MAX_SIGHTINGS ];
+    private int lastAgreeing;
+    private double lastMedian;
+
+    // ***********************************************************************
+    // SampleFusion - set up for our camera and field
+    // ***********************************************************************
+    public SampleFusion( double useCameraOffset, double useSampleRange, double useIntakeOffset,
+                         double useAgreeWindow, double useMaxCorrection ) {
+        cameraOffset = useCameraOffset;
+        sampleRange = useSampleRange;
+        intakeOffset = useIntakeOffset;
+        agreeWindow = useAgreeWindow;
+        maxCorrection = useMaxCorrection;
+        clear();
+    }
+
+    public void clear() {
+        sightingCount = 0;
+        nextSighting = 0;
+        lastAgreeing = 0;
+        lastMedian = 0;
+    }
+
+    // ***********************************************************************
+    // addSighting - gold seen at this bearing (degrees) from the robot at this pose
+    // ***********************************************************************
+    public void addSighting( Pose2d pose, double bearing, double confidence ) {
+        double fieldBearing;
+
+        if ( confidence <= 0 ) {
+            return;
+        }
+        fieldBearing = ( pose.heading + cameraOffset + bearing ) * DEG2RAD;
+        goldX[ nextSighting ] = pose.x + ( sampleRange * FastMath.sin( fieldBearing ));
+        goldY[ nextSighting ] = pose.y + ( sampleRange * FastMath.cos( fieldBearing ));
+        goldWeight[ nextSighting ] = confidence;
+        nextSighting = ( nextSighting + 1 ) % MAX_SIGHTINGS;
+        if ( sightingCount < MAX_SIGHTINGS ) {
+            sightingCount++;
+        }
+    }
+
+    // ***********************************************************************
+    // results
+    // ***********************************************************************
+    public boolean hasEstimate() {
+        return sightingCount > 0;
+    }
+    public int getSightingCount() {
+        return sightingCount;
+    }
+
+    // ***********************************************************************
+    // approachHeading - heading to point the intake at the gold from a pose
+    // ***********************************************************************
+    // votedHeading is the heading for the sample the vote picked - it is returned unless the
+    // sightings that agree with it say to turn a little differently.
+    public double approachHeading( Pose2d from, double votedHeading ) {
+        double heading;
+        double weight;
+        double total;
+        double half;
+        int count;
+        int s;
+        int i;
+
+        // headings from here to each sighting that agrees with the vote, in order
+        count = 0;
+        total = 0;
+        for ( s = 0; s < sightingCount; s++ ) {
+            heading = HeadingController.normalize180(
+                    FastMath.toDegrees( FastMath.atan2( goldX[ s ] - from.x, goldY[ s ] - from.y ))
+                            - intakeOffset );
+            if ( Math.abs( HeadingController.normalize180( heading - votedHeading )) > agreeWindow ) {
+                continue;
+            }
+            weight = goldWeight[ s ];
+            for ( i = count; ( i > 0 ) && ( agreeHeading[ i - 1 ] > heading ); i-- ) {
+                agreeHeading[ i ] = agreeHeading[ i - 1 ];
+                agreeWeight[ i ] = agreeWeight[ i - 1 ];
+            }
+            agreeHeading[ i ] = heading;
+            agreeWeight[ i ] = weight;
+            total += weight;
+            count++;
+        }
+        lastAgreeing = count;
+        if ( count == 0 ) {
+            lastMedian = votedHeading;
+            return votedHeading;
+        }
+
+        // weighted median
+        half = total / 2;
+        weight = 0;
+        for ( i = 0; i < count - 1; i++ ) {
+            weight += agreeWeight[ i ];
+            if ( weight >= half ) {
+                break;
+            }
+        }
+        lastMedian = agreeHeading[ i ];
+
+        // only a small correction to what the vote picked
+        if ( Math.abs( HeadingController.normalize180( lastMedian - votedHeading )) > maxCorrection ) {
+            return votedHeading;
+        }
+        return lastMedian;
+    }
+
+    public String getLog() {
+        if ( !hasEstimate() ) {
+            return "Gold: (none)";
+        }
+        return String.format( "Gold: %d seen, last median %6.1f from %d agreeing",
+                sightingCount, lastMedian, lastAgreeing );
+    }
+}
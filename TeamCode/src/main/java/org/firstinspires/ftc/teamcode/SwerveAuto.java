@@ -20,9 +20,16 @@ package org.firstinspires.ftc.teamcode;
 import com.qualcomm.robotcore.hardware.DcMotor;
 
 import org.firstinspires.ftc.robotcore.external.navigation.VuforiaLocalizer;
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+import org.firstinspires.ftc.teamcode.vision.GoldSighting;
 import org.firstinspires.ftc.teamcode.vision.MasterVision;
+import org.firstinspires.ftc.teamcode.vision.SampleConsensus;
 import org.firstinspires.ftc.teamcode.vision.SampleRandomizedPositions;
 
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
 // ***********************************************************************
 // Definitions from Qualcomm code for OpMode recognition
 // ***********************************************************************
@@ -74,11 +81,36 @@ public class SwerveAuto extends SwerveCore {
     private autoStates revTankState;
     private double stateStartTime;
     private double stateWaitTime;
+    // the next state starts once this is met - stateWaitTime is then only a timeout
+    private SwerveCommand.Condition stateCondition;
+    // where the time goes, by state - and how the current wait will end if nothing else happens
+    private SwerveTimeline timeline;
+    private int stateWaitEnd;
     // report of our time wait
     private String checkReport;
     //    private String loopSenseStatus;
     private Boolean autoDriveWait;
     private Boolean autoDriveStop;
+    // waiting on a turn started by orientRobot
+    private Boolean autoTurnWait;
+    // longest a turn may take (ms) before we give up and move on
+    private double orientTimeout = 2000;
+    // turns left in the turn test
+    private double testTurns[] = { 90, 180, -90, 0 };
+    private int testTurnStep;
+    // drive the wall and depot legs as one path, without stopping at the wall
+    private Boolean usePathFollow = Boolean.TRUE;
+    private PathFollower autoPath = new PathFollower(8);
+    // planned routes to the depot, one per side and gold position - picked at start
+    private static final int ROUTE_COUNT = 6;
+    private Boolean useRouteCache = Boolean.TRUE;
+    private TrajectoryCache routeCache;
+    private Trajectory depotRoute;
+    // marker slides go out while we drive to the depot, starting this long (ms) into the drive
+    private SwerveCommand markerSlides;
+    private double slideOutDelay = 1000;
+    // time for the marker to drop once the slides are out
+    private double markerDumpTime = 1000;
     private double parDist;
     private double parAng;
     private double wallDist;
@@ -103,9 +135,65 @@ public class SwerveAuto extends SwerveCore {
     // for Vuforia detection
     private MasterVision vision;
     private SampleRandomizedPositions goldPosition;
+    // gold sightings put on the field with the pose at the time of each frame
+    // -- camera looks out the side at the center sample, samples are about 1 m from the lander
+    // -- sightings within 15 degrees of the voted sample count, and may move the turn up to 6
+    private SampleFusion sampleFusion = new SampleFusion(-89, 100, 0, 15, 6);
+    private long lastSightingTime;
+    private Pose2d sightingPose = new Pose2d();
 
     // variables for auto actions
     private int moveTimePushoff;
+    // climber target for the drop, and how close (ticks) counts as there
+    private static final int CLIMBER_DROP = 7900;
+    private static final int MOTOR_TOLERANCE = 30;
+
+    // things the states wait for
+    // -- the auto drive is done
+    private final SwerveCommand.Condition driveDone = new SwerveCommand.Condition() {
+        @Override
+        public boolean isMet() {
+            return !autoDriveWait;
+        }
+    };
+    // -- the turn is done
+    private final SwerveCommand.Condition turnDone = new SwerveCommand.Condition() {
+        @Override
+        public boolean isMet() {
+            return !autoTurnWait;
+        }
+    };
+    // -- the climber has let us down
+    private final SwerveCommand.Condition climberDown = new SwerveCommand.Condition() {
+        @Override
+        public boolean isMet() {
+            return Math.abs(encoders.getPosition(climberEnc) - CLIMBER_DROP) <= MOTOR_TOLERANCE;
+        }
+    };
+    // -- the horizontal slide is at its target
+    private final SwerveCommand.Condition hSlideThere = new SwerveCommand.Condition() {
+        @Override
+        public boolean isMet() {
+            return Math.abs(encoders.getPosition(hSlideEnc) - hSlideOut.getTargetPosition()) <= MOTOR_TOLERANCE;
+        }
+    };
+    // -- both slides are at their targets
+    private final SwerveCommand.Condition slidesThere = new SwerveCommand.Condition() {
+        @Override
+        public boolean isMet() {
+            return hSlideThere.isMet()
+                    && (Math.abs(encoders.getPosition(vSlideEnc) - vSlideOut.getTargetPosition()) <= MOTOR_TOLERANCE);
+        }
+    };
+    // -- any drive and the horizontal slide are done
+    private final SwerveCommand.Condition pickupDone = new SwerveCommand.Condition() {
+        @Override
+        public boolean isMet() {
+            return driveDone.isMet() && hSlideThere.isMet();
+        }
+    };
+    // stops the wheels once they have turned to their init positions
+    private SwerveTimer.Task initWheelStop;
 
 
     // ***********************************************************************
@@ -196,7 +284,7 @@ public class SwerveAuto extends SwerveCore {
     public void init() {
 
 
-        double initWheelAngle;
+        final double initWheelAngle;
         double initWheelPower;
 
         swerveDebug(500, "SwerveAuto::init", "START");
@@ -217,6 +305,8 @@ public class SwerveAuto extends SwerveCore {
 
 //        infer tells tensor flow which side  it doesnt have in relation to the robot
         vision = new MasterVision(parameters, hardwareMap, false, MasterVision.TFLiteAlgorithm.INFER_RIGHT);
+        // once the band the sample minerals sit in has been measured on the camera monitor, set it
+        // with vision.setMineralBand(top, bottom) to drop minerals in the crater
         vision.init();// enables the camera overlay
         vision.enable();// enables the tracking algorithms
 
@@ -226,14 +316,22 @@ public class SwerveAuto extends SwerveCore {
 
         // orient to the field now and save our angle for use in teleOp
         ourSwerve.setFieldOrientation();
+        // and keep pose history from here, so sightings can be placed on the field
+        ourSwerve.startTracking();
+
+        // routes to the depot - from the file, or planned now if the file is out of date
+        loadRoutes();
 
         // set initial pushoff delay
         moveTimePushoff = 400;
+        markerSlides = null;
         autoDriveWait = Boolean.FALSE;
+        autoTurnWait = Boolean.FALSE;
+        testTurnStep = 0;
 
-        wristR.setPosition(-1);
-        wristL.setPosition(-1);
-        dump.setPosition(1);
+        wristROut.setPosition(-1);
+        wristLOut.setPosition(-1);
+        dumpOut.setPosition(1);
 
         // cause all the wheels to turn to the initialization position - 45 degrees
         swerveLeftFront.updateWheel(initWheelPower, -initWheelAngle);
@@ -241,16 +339,19 @@ public class SwerveAuto extends SwerveCore {
         swerveLeftRear.updateWheel(initWheelPower, initWheelAngle);
         swerveRightRear.updateWheel(initWheelPower, -initWheelAngle);
 
-        // wait for the wheels to turn
-        swerveSleep(500);
-
-        // stop power to the wheels - servos stay locked
-        swerveLeftFront.updateWheel(0, -initWheelAngle);
-        swerveRightFront.updateWheel(0, initWheelAngle);
-        swerveLeftRear.updateWheel(0, initWheelAngle);
-        swerveRightRear.updateWheel(0, -initWheelAngle);
-
-        swerveDebug(500, "SwerveAuto::init", "Swerve wheels in init positions");
+        // give the wheels time to turn, then stop power to the wheels - servos stay locked
+        // -- runs from init_loop, or at start if we get there first
+        initWheelStop = timers.schedule(500, new Runnable() {
+            @Override
+            public void run() {
+                swerveLeftFront.updateWheel(0, -initWheelAngle);
+                swerveRightFront.updateWheel(0, initWheelAngle);
+                swerveLeftRear.updateWheel(0, initWheelAngle);
+                swerveRightRear.updateWheel(0, -initWheelAngle);
+
+                swerveDebug(500, "SwerveAuto::init", "Swerve wheels in init positions");
+            }
+        });
 
         // Robot and autonomous settings are read in from files in the core class init()
         // Report the autonomous settings
@@ -261,6 +362,22 @@ public class SwerveAuto extends SwerveCore {
     }
 
 
+    // ***********************************************************************
+    // init_loop
+    // ***********************************************************************
+    // Called repeatedly between init and start - finish the timed init work.
+    @Override
+    public void init_loop() {
+        runTimers();
+
+        // place any new gold sighting on the field
+        fuseSightings();
+        swerveLog("Sample", sampleFusion.getLog());
+        swerveLog("Vision", vision.getWorker().getStatsLog() + ", " + vision.getSettleLog());
+        swerveLog("Vote", vision.getTfLite().getVoter().getConsensus().toString());
+    }
+
+
     // ***********************************************************************
     // start
     // ***********************************************************************
@@ -273,10 +390,17 @@ public class SwerveAuto extends SwerveCore {
         // Call the super/base class start method.
         super.start();
 
+        // wheels must be stopped before we move, even if started right after init
+        initWheelStop.runNow();
+
         // turn off tensorFlow, get pa  rticle position
 
+        fuseSightings();
         vision.disable();
-        goldPosition = vision.getTfLite().getLastKnownSampleOrder();
+        // what the recent frames agree on, not just the last one
+        SampleConsensus consensus = vision.getTfLite().getVoter().getConsensus();
+        goldPosition = consensus.getPosition();
+        swerveDebug(500, "SwerveAuto::start", "Sample vote " + consensus);
 
         if ( goldPosition == SampleRandomizedPositions.RIGHT) {
             parPosition = particlePosition.partRight;
@@ -286,10 +410,14 @@ public class SwerveAuto extends SwerveCore {
             parPosition = particlePosition.partCenter;
         }
 
+        // our route to the depot is already planned, just pick it
+        depotRoute = routeCache.getRoute(routeIndex(crater, parPosition));
+
         // nothing sensed yet
 //        loopSenseStatus = "No sensing yet";
 
-        // Start in the initial robot state
+        // Start in the initial robot state, and time the run from here
+        timeline = new SwerveTimeline(stateNames());
         revTankState = autoStates.SWERVE_INIT;
         setState(autoStates.SWERVE_START, 0);
 
@@ -311,20 +439,38 @@ public class SwerveAuto extends SwerveCore {
 
         swerveDebug(500, "SwerveAuto::loop", "START, state is " +
                 getCurStateName() + "'");
+        // the state this pass works on, for the timeline
+        int passState = revTankState.ordinal();
 
 //        display the target
 
         swerveDebug(50, "SwerveAuto::loop", "Sensing status: " +
                 goldPosition + "'");
 
+        // one encoder snapshot for this pass, any timed work, and a step of each command
+        readEncoders();
+        runTimers();
+        runCommands();
+
         // check for auto drive
 
         if ( autoDriveWait ) {
             if ( ourSwerve.autoDriveCheck( autoDriveStop )) {
+                // states waiting on driveDone move on now
                 autoDriveWait = Boolean.FALSE;
+            }
+        }
+
+        // check for auto turn
 
-                // auto finished in time, so no more waiting
-                stateWaitTime = 0.0;
+        if ( autoTurnWait ) {
+            if ( ourSwerve.autoTurnCheck( Boolean.TRUE )) {
+                autoTurnWait = Boolean.FALSE;
+
+                if ( ourSwerve.autoTurnTimedOut() ) {
+                    swerveDebug(1, "SwerveAuto::loop", "Turn timed out at heading " +
+                            swerveNumberFormat.format(ourSwerve.curHeading));
+                }
             }
         }
 
@@ -335,6 +481,7 @@ public class SwerveAuto extends SwerveCore {
                     checkReport + ")");
 
             loopEndReporting();
+            timeline.loopPass(passState, true);
             return;
         }
 
@@ -370,27 +517,26 @@ public class SwerveAuto extends SwerveCore {
                 ourSwerve.autoDrive(0.2, -15, 0.0, .01);
                 autoDriveWait = Boolean.TRUE;
                 autoDriveStop = Boolean.TRUE;
-                setState(autoStates.SWERVE_DROP, 250);
+                setState(autoStates.SWERVE_DROP, driveDone, 250);
                 break;
 //            Drop down from the lander
             case SWERVE_DROP:
-                hSlide.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-                hSlide.setMode(DcMotor.RunMode.RUN_TO_POSITION);
+                hSlideOut.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
+                hSlideOut.setMode(DcMotor.RunMode.RUN_TO_POSITION);
 
-                vSlide.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-                vSlide.setMode(DcMotor.RunMode.RUN_TO_POSITION);
+                vSlideOut.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
+                vSlideOut.setMode(DcMotor.RunMode.RUN_TO_POSITION);
 
                 // motor has 383.6 ticks per rev
-                climber.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-                climber.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-                climber.setTargetPosition(7900);
-                climber.setPower(1);
-                setState(autoStates.SWERVE_DELAY, 2200);
+                climberOut.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
+                climberOut.setMode(DcMotor.RunMode.RUN_TO_POSITION);
+                climberOut.setTargetPosition(CLIMBER_DROP);
+                climberOut.setPower(1);
+                setState(autoStates.SWERVE_DELAY, climberDown, 2200);
                 break;
 
             case SWERVE_DELAY:
 //                                customizable delay adjusts for teammates
-                swerveSleep(0);
                 setState(autoStates.SWERVE_SLIDE, 700);
                 break;
 
@@ -399,9 +545,9 @@ public class SwerveAuto extends SwerveCore {
                 autoDriveStop = Boolean.TRUE;
                 autoDriveWait = Boolean.TRUE;
                 if (debugActive) {
-                    setState(autoStates.SWERVE_AUTO_TESTING_TURN_BACK, 3000);
+                    setState(autoStates.SWERVE_AUTO_TESTING_TURN_BACK, driveDone, 3000);
                 }
-                setState(autoStates.SWERVE_HIT_PARTICLE, 3000);
+                setState(autoStates.SWERVE_HIT_PARTICLE, driveDone, 3000);
                 break;
 
 //            turn towards the particle
@@ -410,45 +556,45 @@ public class SwerveAuto extends SwerveCore {
                 ourSwerve.autoDrive(.75, -95, 0, 20);
                 autoDriveWait = Boolean.TRUE;
                 autoDriveStop = Boolean.TRUE;
-                setState(autoStates.SWERVE_CENTER, 2000);
+                setState(autoStates.SWERVE_CENTER, driveDone, 2000);
                 break;
 
             case SWERVE_CENTER:
                 orientRobot(-84);
-                hSlide.setTargetPosition(100);
-                setState(autoStates.SWERVE_TURN_TO_PARTICLE, 575);
+                hSlideOut.setTargetPosition(100);
+                setState(autoStates.SWERVE_TURN_TO_PARTICLE, turnDone, 575);
                 break;
 
             case SWERVE_TURN_TO_PARTICLE:
-                hSlide.setPower(1);
-                wristL.setPosition(.9);
-                wristR.setPosition(.9);
+                hSlideOut.setPower(1);
+                wristLOut.setPosition(.9);
+                wristROut.setPosition(.9);
                 if(parPosition == particlePosition.partLeft) {
 
-                    orientRobot(-123);
-                    hSlide.setTargetPosition(1100);
-                    setState(autoStates.SWERVE_GRAB, 1000);
+                    orientRobot(sampleApproach(-123));
+                    hSlideOut.setTargetPosition(1100);
+                    setState(autoStates.SWERVE_GRAB, hSlideThere, 1000);
                 }
                 else if(parPosition == particlePosition.partRight) {
-                    orientRobot(-52);
-                    hSlide.setTargetPosition(1400);
-                    setState(autoStates.SWERVE_GRAB, 1000);
+                    orientRobot(sampleApproach(-52));
+                    hSlideOut.setTargetPosition(1400);
+                    setState(autoStates.SWERVE_GRAB, hSlideThere, 1000);
                 }
                 else if(parPosition == particlePosition.partCenter || parPosition == particlePosition.partUnknown) {
-                    orientRobot(-89);
-                    hSlide.setTargetPosition(400);
-                    setState(autoStates.SWERVE_GRAB, 500);
+                    orientRobot(sampleApproach(-89));
+                    hSlideOut.setTargetPosition(400);
+                    setState(autoStates.SWERVE_GRAB, hSlideThere, 500);
                 }
                 break;
 
             case SWERVE_GRAB:
-                if(hSlide.getTargetPosition() < hSlide.getCurrentPosition()) {
-                    hSlide.setPower(-1);
+                if(hSlideOut.getTargetPosition() < encoders.getPosition(hSlideEnc)) {
+                    hSlideOut.setPower(-1);
                 }
                 else {
-                    hSlide.setPower(1);
+                    hSlideOut.setPower(1);
                 }
-                intake.setPower(1);
+                intakeOut.setPower(1);
                 setState(autoStates.SWERVE_PICKUP, 2000);
                 break;
 
@@ -467,27 +613,27 @@ public class SwerveAuto extends SwerveCore {
                     autoDriveStop = Boolean.TRUE;
                 }
                 else {
-                    hSlide.setTargetPosition(1500);
-                    hSlide.setPower(1);
+                    hSlideOut.setTargetPosition(1500);
+                    hSlideOut.setPower(1);
                 }
-                setState(autoStates.SWERVE_RETRACT, 1000);
+                setState(autoStates.SWERVE_RETRACT, pickupDone, 1000);
                 break;
 
             case SWERVE_RETRACT:
-                hSlide.setTargetPosition(200);
-                wristL.setPosition(.25);
-                wristR.setPosition(.25);
-                if(hSlide.getTargetPosition() < hSlide.getCurrentPosition()) {
-                    hSlide.setPower(-1);
+                hSlideOut.setTargetPosition(200);
+                wristLOut.setPosition(.25);
+                wristROut.setPosition(.25);
+                if(hSlideOut.getTargetPosition() < encoders.getPosition(hSlideEnc)) {
+                    hSlideOut.setPower(-1);
                 }
                 else {
-                    hSlide.setPower(1);
+                    hSlideOut.setPower(1);
                 }
                 setState(autoStates.SWERVE_TURN, 100);
                 break;
 
             case SWERVE_TURN:
-                intake.setPower(0);
+                intakeOut.setPower(0);
                 if(crater) {
                     orientRobot(-43);
                 }
@@ -495,11 +641,31 @@ public class SwerveAuto extends SwerveCore {
                     orientRobot(
                             120);
                 }
-                setState(autoStates.SWERVE_TO_WALL, 500);
+                setState(autoStates.SWERVE_TO_WALL, turnDone, 500);
                 break;
 
 //            Move to the wall
             case SWERVE_TO_WALL:
+                if(useRouteCache && (depotRoute != null) && (depotRoute.getCount() > 0)) {
+                    // planned route for our side and gold - the depot state is skipped
+                    ourSwerve.autoFollowTrajectory(depotRoute);
+                    autoDriveWait = Boolean.TRUE;
+                    autoDriveStop = Boolean.TRUE;
+                    slidesOutOnTheWay();
+                    setState(autoStates.SWERVE_GM_EXTEND, driveDone, depotRoute.getDuration() * 1000 + 2000);
+                    break;
+                }
+                if(usePathFollow) {
+                    // both legs in one go - the depot state is skipped
+                    ourSwerve.autoPathStart(autoPath);
+                    addDepotLegs(autoPath, crater);
+                    ourSwerve.autoFollow(autoPath);
+                    autoDriveWait = Boolean.TRUE;
+                    autoDriveStop = Boolean.TRUE;
+                    slidesOutOnTheWay();
+                    setState(autoStates.SWERVE_GM_EXTEND, driveDone, 6000);
+                    break;
+                }
                 if(crater) {
                     ourSwerve.autoDrive(1, 193, -45, 110);
                     autoDriveWait = Boolean.TRUE;
@@ -510,7 +676,7 @@ public class SwerveAuto extends SwerveCore {
                     autoDriveWait = Boolean.TRUE;
                     autoDriveStop = Boolean.TRUE;
                 }
-                setState(autoStates.SWERVE_TO_DEPOT, 3000);
+                setState(autoStates.SWERVE_TO_DEPOT, driveDone, 3000);
                 break;
 
             case SWERVE_TO_DEPOT:
@@ -524,25 +690,27 @@ public class SwerveAuto extends SwerveCore {
                     autoDriveWait = Boolean.TRUE;
                     autoDriveStop = Boolean.TRUE;
                 }
-                setState(autoStates.SWERVE_GM_EXTEND, 3000);
+                setState(autoStates.SWERVE_GM_EXTEND, driveDone, 3000);
                 break;
 
             case SWERVE_GM_EXTEND:
-                vSlide.setTargetPosition(2000);
-                hSlide.setTargetPosition(3000);
-                if(hSlide.getTargetPosition() < hSlide.getCurrentPosition()) {
-                    hSlide.setPower(-1);
+                if (markerSlides == null) {
+                    // the slides did not go out on the way - send them now
+                    markerSlides = commands.schedule(SwerveCommand.race(
+                            moveSlides(2000, 3000),
+                            SwerveCommand.waitMs(2000)));
                 }
-                else {
-                    hSlide.setPower(1);
+                // once the slides are there, drop the marker and give it time to fall
+                if (commands.isScheduled(markerSlides)) {
+                    holdState(20);
+                    break;
                 }
-                vSlide.setPower(1);
-                dump.setPosition(0);
-                setState(autoStates.SWERVE_GM_BACK, 2000);
+                dumpOut.setPosition(0);
+                setState(autoStates.SWERVE_GM_BACK, markerDumpTime);
                 break;
 
             case SWERVE_GM_BACK:
-                dump.setPosition(1);
+                dumpOut.setPosition(1);
                 setState(autoStates.SWERVE_TO_CRATER, 10);
                 break;
 
@@ -552,13 +720,13 @@ public class SwerveAuto extends SwerveCore {
                     ourSwerve.autoDrive(1, -45, -45, 80);
                     autoDriveWait = Boolean.TRUE;
                     autoDriveStop = Boolean.TRUE;
-                    setState(autoStates.SWERVE_LAST_MOVE, 3000);
+                    setState(autoStates.SWERVE_LAST_MOVE, driveDone, 3000);
                 }
                 else {
                     ourSwerve.autoDrive(1, 135, 135, 85);
                     autoDriveWait = Boolean.TRUE;
                     autoDriveStop = Boolean.TRUE;
-                    setState(autoStates.SWERVE_LAST_MOVE, 3000);
+                    setState(autoStates.SWERVE_LAST_MOVE, driveDone, 3000);
                 }
                 break;
 
@@ -568,7 +736,7 @@ public class SwerveAuto extends SwerveCore {
             case SWERVE_LAST_MOVE:
                 // stop moving
                 ourSwerve.stopRobot();
-                hSlide.setPower(0);
+                hSlideOut.setPower(0);
 
                 setState(autoStates.SWERVE_DONE, 10);
                 break;
@@ -578,7 +746,7 @@ public class SwerveAuto extends SwerveCore {
             case SWERVE_DONE:
                 // stop any movement
                 ourSwerve.stopRobot();
-                swerveDebug(500, "Climber Position", "The cllimber postition is " + climber.getCurrentPosition());
+                swerveDebug(500, "Climber Position", "The cllimber postition is " + encoders.getPosition(climberEnc));
 
 
                 break;
@@ -589,20 +757,18 @@ public class SwerveAuto extends SwerveCore {
             // **** TEST cases **** //
             // make sure robot is calibrated properly: run a test auton
             case SWERVE_AUTO_TESTING_TURN_BACK:
-                orientRobot(90);
-                swerveSleep(1000);
-                orientRobot(180);
-                swerveSleep(1000);
-                orientRobot(-90);
-                swerveSleep(1000);
-                orientRobot(0);
-                swerveSleep(1000);
-                setState(autoStates.SWERVE_LAST_MOVE, 10000);
+                // one turn each time through, with a pause between turns
+                if (testTurnStep < testTurns.length) {
+                    orientRobot(testTurns[testTurnStep++]);
+                    holdState(1000);
+                } else {
+                    setState(autoStates.SWERVE_LAST_MOVE, 10000);
+                }
                 break;
 
             case SWERVE_AUTO_TESTING_CLIMB:
-                climber.setTargetPosition(0);
-                climber.setPower(-1);
+                climberOut.setTargetPosition(0);
+                climberOut.setPower(-1);
                 break;
 
 
@@ -618,6 +784,7 @@ public class SwerveAuto extends SwerveCore {
         if ( debugActive || ( revTankState != autoStates.SWERVE_DONE )) {
             loopEndReporting();
         }
+        timeline.loopPass(passState, false);
 
         swerveDebug(500, "SwerveAuto::loop", "LOOP PASS DONE");
     }
@@ -633,9 +800,13 @@ public class SwerveAuto extends SwerveCore {
     public void stop() {
         swerveDebug(500, "SwerveAuto::stop", "START");
 
-//        completely shut down tensorFlow
+//        completely shut down tensorFlow, and its worker thread
+        swerveDebug(500, "SwerveAuto::stop", vision.getWorker().getStatsLog());
         vision.shutdown();
 
+        // save where the time went
+        writeTimeline();
+
 
         // Call the super/base class stop method
         super.stop();
@@ -649,6 +820,11 @@ public class SwerveAuto extends SwerveCore {
     // ***********************************************************************
     // Set a new state to run, with a delay before it activates
     private void setState(autoStates myTarget, double myDelay) {
+        setState(myTarget, null, myDelay);
+    }
+
+    // Set a new state to run as soon as the condition is met - or after the delay if it never is
+    private void setState(autoStates myTarget, SwerveCommand.Condition myCondition, double myTimeout) {
 
         // when debugging, be ready to stop
         if (debugActive && (debugStates-- < 1)) {
@@ -662,11 +838,17 @@ public class SwerveAuto extends SwerveCore {
         }
         // Record the starting time for the new state
         stateStartTime = getRuntime();
-        // Recored the intended delay
-        stateWaitTime = myDelay;
+        // Recored the intended delay, or timeout
+        stateWaitTime = myTimeout;
+        stateCondition = myCondition;
+        stateWaitEnd = (myCondition == null) ? SwerveTimeline.WAIT_FIXED : SwerveTimeline.WAIT_TIMEOUT;
+        timeline.stateSet(myTarget.ordinal(), myTimeout);
         // set the state...
         revTankState = myTarget;
-        ourSwerve.stopRobot();
+        // stop, unless a drive or turn is still going - it carries on into the new state
+        if (!autoDriveWait && !autoTurnWait) {
+            ourSwerve.stopRobot();
+        }
         // Send telemetry data to the driver station.
         swerveLog("State", "Autonomous State: " + getCurStateName() +
                 ", state time = " + swerveNumberFormat.format(getRuntime() - stateStartTime));
@@ -677,14 +859,42 @@ public class SwerveAuto extends SwerveCore {
     // Is the target delay past?
     // Any other conditions to wait for before changing?
     private Boolean checkStateReady() {
-        // Check current time and requested delay
+        // Check for the condition, then current time and requested delay
+        if ((stateCondition != null) && stateCondition.isMet()) {
+            stateCondition = null;
+            stateWaitTime = 0.0;
+            stateWaitEnd = SwerveTimeline.WAIT_MET;
+        }
         if (!checkStateElapsed(stateWaitTime)) {
             return Boolean.FALSE;
         }
+        if (stateCondition != null) {
+            swerveDebug(1, "SwerveAuto::checkStateReady", "Timed out waiting to start '" +
+                    getCurStateName() + "'");
+            stateCondition = null;
+        }
+        // a turn has to finish (or time out) before we move on
+        if (autoTurnWait) {
+            checkReport = "== turning, heading " +
+                    swerveNumberFormat.format(ourSwerve.curHeading);
+            return Boolean.FALSE;
+        }
         // Add waits for motor positions or anything else here...
+        timeline.waitEnded(revTankState.ordinal(), stateWaitEnd);
         return Boolean.TRUE;
     }
     // ***********************************************************************
+    // holdState
+    // ***********************************************************************
+    // Stay in the current state, and run it again after the delay
+    private void holdState(double myDelay) {
+        stateStartTime = getRuntime();
+        stateWaitTime = myDelay;
+        stateCondition = null;
+        stateWaitEnd = SwerveTimeline.WAIT_FIXED;
+        timeline.stateHeld(revTankState.ordinal(), myDelay);
+    }
+    // ***********************************************************************
     // checkStateElapsed
     // ***********************************************************************
     // Is the target delay past?
@@ -712,35 +922,216 @@ public class SwerveAuto extends SwerveCore {
         return Boolean.TRUE;
     }
     // ***********************************************************************
-    // orientRobot
+    // stateNames / writeTimeline
     // ***********************************************************************
-    // turn the robot to a specific orientation
-    private void orientRobot(double newOrientationDegrees) {
-        double newOrienation = newOrientationDegrees;
-        double turnSpeed;
+    // Names for the timeline, by state number
+    private String[] stateNames() {
+        autoStates[] states = autoStates.values();
+        String[] names = new String[states.length];
+        int s;
+
+        for (s = 0; s < states.length; s++) {
+            names[s] = states[s].name();
+        }
+        return names;
+    }
+
+    // Save the timeline for this run, and put the summary in the log
+    private void writeTimeline() {
+        File runFile;
 
-        // turn until within ~10 degrees
-        while (Math.abs(newOrienation - ourSwerve.curHeading) > 3.0) {
-            // check robot orientation
-            ourSwerve.checkOrientation();
+        if (timeline == null) {
+            return;
+        }
+        runFile = new File(AppUtil.FIRST_FOLDER,
+                "SwerveTimeline-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".csv");
+        if (!timeline.write(runFile)) {
+            swerveDebug(1, "SwerveAuto::writeTimeline", "could not write " + runFile);
+        }
+        for (String line : timeline.getSummary()) {
+            swerveDebug(1, "Timeline", line);
+        }
+    }
 
-            // turn faster if we need to turn more
-            if (Math.abs(newOrienation - ourSwerve.curHeading) > 40.0) {
-                turnSpeed = .15;
+    // ***********************************************************************
+    // fuseSightings
+    // ***********************************************************************
+    // Add the newest gold sighting (if we have not used it yet) at the pose from its frame time
+    private void fuseSightings() {
+        GoldSighting sighting = vision.getTfLite().getLastGoldSighting();
+
+        if ((sighting == null) || (sighting.getTimeNanos() == lastSightingTime)) {
+            return;
+        }
+        lastSightingTime = sighting.getTimeNanos();
+
+        if (!ourSwerve.getPoseAt(sighting.getTimeNanos(), sightingPose)) {
+            sightingPose.set(ourSwerve.getPose());
+        }
+        sampleFusion.addSighting(sightingPose, sighting.getBearingDegrees(), sighting.getConfidence());
+    }
+
+    // ***********************************************************************
+    // sampleApproach
+    // ***********************************************************************
+    // Heading to turn to for the voted sample - fine tuned by the sightings that agree with it
+    private double sampleApproach(double defaultHeading) {
+        double heading = sampleFusion.approachHeading(ourSwerve.getPose(), defaultHeading);
+
+        swerveDebug(500, "SwerveAuto::sampleApproach", "heading " + swerveNumberFormat.format(heading) +
+                " (default " + defaultHeading + ") " + sampleFusion.getLog());
+        return heading;
+    }
+
+    // ***********************************************************************
+    // slidesOutOnTheWay
+    // ***********************************************************************
+    // Start the marker slides out a little into the drive to the depot
+    private void slidesOutOnTheWay() {
+        markerSlides = commands.schedule(SwerveCommand.sequence(
+                SwerveCommand.waitMs(slideOutDelay),
+                SwerveCommand.race(
+                        moveSlides(2000, 3000),
+                        SwerveCommand.waitMs(2000))));
+    }
+
+    // ***********************************************************************
+    // moveSlides
+    // ***********************************************************************
+    // Command to run both slides to their targets, done once they get there (from the
+    // encoder snapshot, like the other conditions, rather than another isBusy() read)
+    private SwerveCommand moveSlides(final int vTarget, final int hTarget) {
+        return new SwerveCommand() {
+            @Override
+            public void initialize() {
+                vSlideOut.setTargetPosition(vTarget);
+                hSlideOut.setTargetPosition(hTarget);
+                if(hSlideOut.getTargetPosition() < encoders.getPosition(hSlideEnc)) {
+                    hSlideOut.setPower(-1);
+                }
+                else {
+                    hSlideOut.setPower(1);
+                }
+                vSlideOut.setPower(1);
+            }
+            @Override
+            public boolean isFinished() {
+                return slidesThere.isMet();
             }
-            else {
-                turnSpeed = .1;
+            @Override
+            public String getName() {
+                return "moveSlides";
             }
-            if (newOrienation - ourSwerve.curHeading > 0) {
-                turnSpeed = -turnSpeed;
+        };
+    }
+
+    // ***********************************************************************
+    // addDepotLegs
+    // ***********************************************************************
+    // The legs from after the sample turn, to the wall and on to the depot
+    private void addDepotLegs(PathFollower path, boolean craterSide) {
+        if(craterSide) {
+            ourSwerve.autoPathLeg(path, 1, 193, -45, 110);
+            ourSwerve.autoPathLeg(path, 1, 140, -45, 80);
+        }
+        else {
+            ourSwerve.autoPathLeg(path, 1, 193, 135, 100);
+            ourSwerve.autoPathLeg(path, 1, -44, 135, 90);
+        }
+    }
+
+    // ***********************************************************************
+    // buildRoute
+    // ***********************************************************************
+    // The waypoints to the depot on the field, starting where the states leave the robot after
+    // sampling this gold position (the same moves as the states, from the lander)
+    private void buildRoute(PathFollower path, boolean craterSide, particlePosition position) {
+        double startX;
+        double startY;
+
+        // where sampling leaves us
+        path.clear();
+        path.addPoint(0, 0, 0, 0);
+        ourSwerve.autoPathLeg(path, 0.2, -15, 0.0, .01);
+        ourSwerve.autoPathLeg(path, .8, -15, 0, 6);
+        ourSwerve.autoPathLeg(path, .75, -95, 0, 20);
+        if(position == particlePosition.partLeft) {
+            ourSwerve.autoPathLeg(path, .8, -123, 0, 5);
+        }
+        else if(position == particlePosition.partRight) {
+            ourSwerve.autoPathLeg(path, .8, -49, 0, 4);
+        }
+        startX = path.getX(path.getCount() - 1);
+        startY = path.getY(path.getCount() - 1);
+
+        // and from there, after the turn, to the depot
+        path.clear();
+        path.addPoint(startX, startY, craterSide ? -43 : 120, 0);
+        addDepotLegs(path, craterSide);
+    }
+
+    // route number for a side and gold position
+    private int routeIndex(boolean craterSide, particlePosition position) {
+        int gold;
+
+        if(position == particlePosition.partLeft) {
+            gold = 0;
+        } else if(position == particlePosition.partRight) {
+            gold = 2;
+        } else {
+            gold = 1;
+        }
+        return (craterSide ? 0 : 3) + gold;
+    }
+
+    // ***********************************************************************
+    // loadRoutes
+    // ***********************************************************************
+    // Map the planned routes from their file - if the routes or drive limits have changed since
+    // it was written, plan them all again and save them for next time
+    private void loadRoutes() {
+        particlePosition[] golds = { particlePosition.partLeft, particlePosition.partCenter, particlePosition.partRight };
+        PathFollower[] paths = new PathFollower[ROUTE_COUNT];
+        int signature;
+        int side;
+        int gold;
+        int route;
+
+        for (side = 0; side < 2; side++) {
+            for (gold = 0; gold < golds.length; gold++) {
+                route = routeIndex(side == 0, golds[gold]);
+                paths[route] = new PathFollower(8);
+                buildRoute(paths[route], side == 0, golds[gold]);
             }
+        }
+        signature = TrajectoryCache.signature(paths, ourSwerve.getPlanLimits());
 
-            // turn the robot
-            ourSwerve.driveRobot(0.0, 0.0, turnSpeed, 0.0);
+        routeCache = new TrajectoryCache(new File(AppUtil.FIRST_FOLDER, "SwerveRoutes.dat"), ROUTE_COUNT);
+        if (routeCache.load(signature)) {
+            swerveDebug(500, "SwerveAuto::loadRoutes", "routes mapped from file");
+            return;
+        }
+
+        for (route = 0; route < ROUTE_COUNT; route++) {
+            routeCache.setRoute(route, ourSwerve.planTrajectory(paths[route]));
+        }
+        if (routeCache.save(signature)) {
+            swerveDebug(500, "SwerveAuto::loadRoutes", "routes planned and saved");
+        } else {
+            swerveDebug(1, "SwerveAuto::loadRoutes", "routes planned, could not save them");
         }
+    }
 
-        // stop the robot
-        ourSwerve.stopRobot();
+    // ***********************************************************************
+    // orientRobot
+    // ***********************************************************************
+    // start turning the robot to a specific orientation
+    // the turn runs a little each loop, the state waits for it to settle
+    private void orientRobot(double newOrientationDegrees) {
+        ourSwerve.autoTurn(newOrientationDegrees, orientTimeout);
+        autoTurnWait = Boolean.TRUE;
+        // a turn replaces any drive
+        autoDriveWait = Boolean.FALSE;
     }
 
 }
\ No newline at end of file
@@ -15,6 +15,9 @@ import com.qualcomm.robotcore.eventloop.opmode.Autonomous;
 
 public class SwerveAutoSet extends SwerveCore {
 
+    // time of the next settings read
+    private SwerveTimer.Deadline settingsDelay = new SwerveTimer.Deadline();
+
     // ***********************************************************************
     // SwerveAuto
     // ***********************************************************************
@@ -75,13 +78,14 @@ public class SwerveAutoSet extends SwerveCore {
     public void loop()
     {
         // Use controllers to set values
-        readSettings();
+        // -- wait between reads, so we do not read settings too fast
+        if ( settingsDelay.expired() ) {
+            readSettings();
+            settingsDelay.start( 250 );
+        }
 
         // Report the current settings
         showAutonomousGoals();
-
-        // Wait, so we do not read settings too fast
-        swerveSleep( 250 );
     }
 
 
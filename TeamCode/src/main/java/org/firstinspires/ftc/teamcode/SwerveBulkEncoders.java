@@ -0,0 +1,208 @@
+// ***********************************************************************
+// SwerveBulkEncoders
+// ***********************************************************************
+// One snapshot of all our motor encoders per loop.
+//
+// Calling getCurrentPosition() on a motor is a separate round trip to its Rev hub each time.
+// The hub can return the encoders for all four of its motor ports in a single "bulk input"
+// command. This class sends that command once per hub and keeps the encoder counts in an
+// int array, so the rest of the loop reads them from memory.
+//
+// Motors are registered with add(), which returns the index to use with getPosition().
+// Motors that are not on a Rev hub are read one at a time as before.
+//
+// The encoder counts are adjusted for the motor direction, the same as getCurrentPosition().
+
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.hardware.lynx.LynxModule;
+import com.qualcomm.hardware.lynx.LynxNackException;
+import com.qualcomm.hardware.lynx.commands.core.LynxGetBulkInputDataCommand;
+import com.qualcomm.hardware.lynx.commands.core.LynxGetBulkInputDataResponse;
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.DcMotorSimple;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import java.util.List;
+
+// ***********************************************************************
+// SwerveBulkEncoders
+// ***********************************************************************
+// Class definitions
+public class SwerveBulkEncoders {
+
+    // most motors we expect to track
+    private static final int MAX_MOTORS = 16;
+
+    // Rev hubs on the robot
+    private LynxModule[] hubs;
+    // hubs we actually need to read
+    private boolean[] hubUsed;
+
+    // registered motors
+    private DcMotor[] motors;
+    private int[] motorHub;         // index into hubs, or -1 to read the motor directly
+    private int[] motorPort;
+    private int[] motorSign;
+    private int motorCount;
+
+    // the snapshot
+    private int[] positions;
+    private long snapshotTime;
+    // a snapshot newer than this is reused rather than read again
+    private long cycleNanos;
+
+    // stats
+    private long bulkReads;
+    private long directReads;
+    private long failedReads;
+
+    // ***********************************************************************
+    // SwerveBulkEncoders - find the Rev hubs on the robot
+    // ***********************************************************************
+    public SwerveBulkEncoders( HardwareMap hardwareMap, double cycleMs ) {
+        List<LynxModule> allHubs;
+
+        allHubs = hardwareMap.getAll( LynxModule.class );
+        hubs = allHubs.toArray( new LynxModule[ allHubs.size() ] );
+        hubUsed = new boolean[ hubs.length ];
+
+        motors = new DcMotor[ MAX_MOTORS ];
+        motorHub = new int[ MAX_MOTORS ];
+        motorPort = new int[ MAX_MOTORS ];
+        motorSign = new int[ MAX_MOTORS ];
+        positions = new int[ MAX_MOTORS ];
+        motorCount = 0;
+
+        setCycle( cycleMs );
+    }
+
+    // ***********************************************************************
+    // setCycle - how long a snapshot stays current
+    // ***********************************************************************
+    public void setCycle( double cycleMs ) {
+        cycleNanos = (long)( cycleMs * 1e6 );
+    }
+
+    // ***********************************************************************
+    // add - track a motor in the snapshot
+    // ***********************************************************************
+    // Returns the index for getPosition(). Adding the same motor again gives the same index.
+    public synchronized int add( DcMotor newMotor ) {
+        String connection;
+        int m;
+        int h;
+
+        for ( m = 0; m < motorCount; m++ ) {
+            if ( motors[ m ] == newMotor ) {
+                return m;
+            }
+        }
+        if ( motorCount == MAX_MOTORS ) {
+            throw new IllegalStateException( "SwerveBulkEncoders: too many motors" );
+        }
+
+        m = motorCount++;
+        motors[ m ] = newMotor;
+        motorPort[ m ] = newMotor.getPortNumber();
+        motorHub[ m ] = -1;
+
+        // the motor controller on a Rev hub reports the same connection as its hub
+        connection = newMotor.getController().getConnectionInfo();
+        for ( h = 0; h < hubs.length; h++ ) {
+            if ( connection.equals( hubs[ h ].getConnectionInfo() )) {
+                motorHub[ m ] = h;
+                hubUsed[ h ] = true;
+                break;
+            }
+        }
+
+        // the first snapshot after this has to read everything
+        snapshotTime = 0;
+
+        return m;
+    }
+
+    // ***********************************************************************
+    // update - read all encoders, unless this cycle's snapshot is current
+    // ***********************************************************************
+    public synchronized void update() {
+        long now = System.nanoTime();
+
+        if (( snapshotTime != 0 ) && ( now - snapshotTime < cycleNanos )) {
+            return;
+        }
+        readAll();
+        snapshotTime = now;
+    }
+
+    // ***********************************************************************
+    // refresh - read all encoders now
+    // ***********************************************************************
+    public synchronized void refresh() {
+        readAll();
+        snapshotTime = System.nanoTime();
+    }
+
+    // ***********************************************************************
+    // getPosition - encoder count from the snapshot
+    // ***********************************************************************
+    public synchronized int getPosition( int index ) {
+        return positions[ index ];
+    }
+
+    // System.nanoTime() of the snapshot
+    public synchronized long getSnapshotTime() {
+        return snapshotTime;
+    }
+
+    public String getStatsLog() {
+        return "Encoders bulk: " + bulkReads + "  direct: " + directReads + "  failed: " + failedReads;
+    }
+
+    // ***********************************************************************
+    // readAll - one bulk read per hub, then any motors not on a hub
+    // ***********************************************************************
+    private void readAll() {
+        LynxGetBulkInputDataResponse response;
+        int h;
+        int m;
+
+        // direction can change at any time, so check it on each snapshot (no bus traffic)
+        for ( m = 0; m < motorCount; m++ ) {
+            motorSign[ m ] = ( motors[ m ].getDirection() == DcMotorSimple.Direction.REVERSE ) ? -1 : 1;
+        }
+
+        for ( h = 0; h < hubs.length; h++ ) {
+            if ( !hubUsed[ h ] ) {
+                continue;
+            }
+            try {
+                response = new LynxGetBulkInputDataCommand( hubs[ h ] ).sendReceive();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (LynxNackException | RuntimeException e) {
+                // keep the last values for this hub
+                failedReads++;
+                RobotLog.e( "SwerveBulkEncoders: bulk read failed " + e );
+                continue;
+            }
+            bulkReads++;
+
+            for ( m = 0; m < motorCount; m++ ) {
+                if ( motorHub[ m ] == h ) {
+                    positions[ m ] = motorSign[ m ] * response.getEncoder( motorPort[ m ] );
+                }
+            }
+        }
+
+        for ( m = 0; m < motorCount; m++ ) {
+            if ( motorHub[ m ] < 0 ) {
+                positions[ m ] = motors[ m ].getCurrentPosition();
+                directReads++;
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+// ***********************************************************************
+// SwerveCommand
+// ***********************************************************************
+// One robot action that runs a little each loop, so several can run at the same time.
+//
+// A command is started once (initialize), moved along once per loop (execute) until it says it
+// is finished, and then ended - or ended early (interrupted) if it is cancelled. The
+// SwerveScheduler does the calling, so a command must never wait inside a call.
+//
+// Commands can be put together into groups, which are commands too:
+//      - sequence - each command in turn, done when the last one is done
+//      - parallel - all at once, done when they are all done
+//      - race     - all at once, done when any one is done (the others are interrupted)
+//      - deadline - all at once, done when the first one (the deadline) is done
+//
+//      commands.schedule(SwerveCommand.sequence(
+//              SwerveCommand.waitMs(800),
+//              slidesOut));
+//
+// A command runs in one place at a time, so do not put the same one in two running groups.
+
+package org.firstinspires.ftc.teamcode;
+
+// ***********************************************************************
+// SwerveCommand
+// ***********************************************************************
+// Class definitions
+public abstract class SwerveCommand {
+
+    // ***********************************************************************
+    // Condition - something to wait for
+    // ***********************************************************************
+    public interface Condition {
+        boolean isMet();
+    }
+
+    // ***********************************************************************
+    // the command steps - override the ones needed
+    // ***********************************************************************
+    // start the action
+    public void initialize() {
+    }
+    // move the action along, once per loop
+    public void execute() {
+    }
+    // checked after each execute
+    public abstract boolean isFinished();
+    // finished, or cancelled if interrupted
+    public void end( boolean interrupted ) {
+    }
+
+    // name for the logs
+    public String getName() {
+        String name = getClass().getSimpleName();
+
+        return name.isEmpty() ? "command" : name;
+    }
+
+    // ***********************************************************************
+    // simple commands
+    // ***********************************************************************
+    // run an action once, done right away
+    public static SwerveCommand instant( final Runnable action ) {
+        return new SwerveCommand() {
+            @Override
+            public void initialize() {
+                action.run();
+            }
+            @Override
+            public boolean isFinished() {
+                return true;
+            }
+        };
+    }
+
+    // done once this many ms have passed
+    public static SwerveCommand waitMs( final double delayMs ) {
+        return new SwerveCommand() {
+            private final SwerveTimer.Deadline due = new SwerveTimer.Deadline();
+
+            @Override
+            public void initialize() {
+                due.start( delayMs );
+            }
+            @Override
+            public boolean isFinished() {
+                return due.expired();
+            }
+        };
+    }
+
+    // done once the condition is met
+    public static SwerveCommand waitUntil( final Condition condition ) {
+        return new SwerveCommand() {
+            @Override
+            public boolean isFinished() {
+                return condition.isMet();
+            }
+        };
+    }
+
+    // ***********************************************************************
+    // groups
+    // ***********************************************************************
+    public static SwerveCommand sequence( SwerveCommand... commands ) {
+        return new Sequence( commands );
+    }
+    public static SwerveCommand parallel( SwerveCommand... commands ) {
+        return new Group( Group.ALL, commands );
+    }
+    public static SwerveCommand race( SwerveCommand... commands ) {
+        return new Group( Group.ANY, commands );
+    }
+    public static SwerveCommand deadline( SwerveCommand deadline, SwerveCommand... others ) {
+        SwerveCommand[] commands = new SwerveCommand[ others.length + 1 ];
+
+        commands[ 0 ] = deadline;
+        System.arraycopy( others, 0, commands, 1, others.length );
+        return new Group( Group.FIRST, commands );
+    }
+
+    // ***********************************************************************
+    // Sequence - one command after another
+    // ***********************************************************************
+    static class Sequence extends SwerveCommand {
+        private final SwerveCommand[] commands;
+        private int current;
+
+        Sequence( SwerveCommand[] useCommands ) {
+            commands = useCommands;
+        }
+
+        @Override
+        public void initialize() {
+            current = 0;
+            if ( commands.length > 0 ) {
+                commands[ 0 ].initialize();
+            }
+        }
+
+        @Override
+        public void execute() {
+            // the next command starts as soon as one finishes, and any that are done as soon
+            // as they start are passed in the same loop
+            while ( current < commands.length ) {
+                commands[ current ].execute();
+                if ( !commands[ current ].isFinished() ) {
+                    return;
+                }
+                commands[ current ].end( false );
+                current++;
+                if ( current < commands.length ) {
+                    commands[ current ].initialize();
+                    if ( !commands[ current ].isFinished() ) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean isFinished() {
+            return current >= commands.length;
+        }
+
+        @Override
+        public void end( boolean interrupted ) {
+            if ( interrupted && ( current < commands.length )) {
+                commands[ current ].end( true );
+            }
+        }
+    }
+
+    // ***********************************************************************
+    // Group - commands side by side
+    // ***********************************************************************
+    static class Group extends SwerveCommand {
+        // done when all, any, or the first command is done
+        static final int ALL = 0;
+        static final int ANY = 1;
+        static final int FIRST = 2;
+
+        private final SwerveCommand[] commands;
+        private final boolean[] running;
+        private final int finishWhen;
+        private boolean finished;
+
+        Group( int useFinishWhen, SwerveCommand[] useCommands ) {
+            finishWhen = useFinishWhen;
+            commands = useCommands;
+            running = new boolean[ useCommands.length ];
+        }
+
+        @Override
+        public void initialize() {
+            int c;
+
+            for ( c = 0; c < commands.length; c++ ) {
+                commands[ c ].initialize();
+                running[ c ] = true;
+            }
+            finished = ( commands.length == 0 );
+        }
+
+        @Override
+        public void execute() {
+            boolean anyDone = false;
+            boolean allDone = true;
+            int c;
+
+            for ( c = 0; c < commands.length; c++ ) {
+                if ( running[ c ] ) {
+                    commands[ c ].execute();
+                    if ( commands[ c ].isFinished() ) {
+                        commands[ c ].end( false );
+                        running[ c ] = false;
+                    }
+                }
+                if ( running[ c ] ) {
+                    allDone = false;
+                } else {
+                    anyDone = true;
+                }
+            }
+
+            if ( finishWhen == ALL ) {
+                finished = allDone;
+            } else if ( finishWhen == ANY ) {
+                finished = anyDone;
+            } else {
+                finished = !running[ 0 ];
+            }
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public void end( boolean interrupted ) {
+            int c;
+
+            // anything still going is cut short
+            for ( c = 0; c < commands.length; c++ ) {
+                if ( running[ c ] ) {
+                    commands[ c ].end( true );
+                    running[ c ] = false;
+                }
+            }
+        }
+    }
+}
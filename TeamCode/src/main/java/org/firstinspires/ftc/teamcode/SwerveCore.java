@@ -30,6 +30,7 @@ import com.qualcomm.robotcore.hardware.Servo;
 import com.qualcomm.robotcore.util.ElapsedTime;
 import com.qualcomm.robotcore.util.RobotLog;
 
+import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
 import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
 
 import java.io.FileInputStream;
@@ -83,11 +84,42 @@ public class SwerveCore extends OpMode {
     Servo wristR;
     Servo dump;
 
+    // deadlines and timed work, checked each loop instead of sleeping
+    SwerveTimer timers = new SwerveTimer();
+    // robot actions that run side by side, a step each loop
+    SwerveScheduler commands = new SwerveScheduler();
+
+    // encoder snapshot - one bulk read per hub each loop
+    SwerveBulkEncoders encoders;
+    static final double encoderCycle = 5;
+    int climberEnc;
+    int vSlideEnc;
+    int hSlideEnc;
+
+    // cached outputs - writes that repeat the last value are not sent to the hub
+    SwerveOutputCache outputCache;
+    static final double outputEpsilon = 0.005;
+    SwerveOutputCache.CachedMotor climberOut;
+    SwerveOutputCache.CachedMotor vSlideOut;
+    SwerveOutputCache.CachedMotor hSlideOut;
+    SwerveOutputCache.CachedMotor intakeOut;
+    SwerveOutputCache.CachedServo wristLOut;
+    SwerveOutputCache.CachedServo wristROut;
+    SwerveOutputCache.CachedServo dumpOut;
+
 
 
     // *** Sensors ***
     DistanceSensor heightL;
+    // scheduled reads of the height sensor (cm)
+    SwerveSensorScheduler.Sensor heightSensor;
+    static final double heightReadWait = 100;
     private BNO055IMU ourIMU;
+    // background IMU reads, so the loop does not wait on the I2C bus
+    SwerveImuSampler imuSampler;
+    // how often the IMU is read (Hz) - two I2C reads per sample, so leave the bus room, and
+    // check the real period in the IMU stats log
+    static final double imuSampleRate = 50;
 
         // IMU calibration file
     private String imuCalibration = "RevIMUCalibration.json";
@@ -224,19 +256,28 @@ public class SwerveCore extends OpMode {
 
         swerveDebug(500, "SwerveCore::init", "MOTORS connected");
 
+        // mechanism encoders come from the per-loop snapshot
+        encoders = new SwerveBulkEncoders(hardwareMap, encoderCycle);
+        climberEnc = encoders.add(climber);
+        vSlideEnc = encoders.add(vSlide);
+        hSlideEnc = encoders.add(hSlide);
+
         // Servos for the wheels
         servoLeftFront = hardwareMap.servo.get("LeftFrontS");
-        servoLeftFront.scaleRange(1.0/6,5.0/6);
         swerveDebugDevice(500, "Left Front Servo", servoLeftFront);
         servoRightFront = hardwareMap.servo.get("RightFrontS");
-        servoRightFront.scaleRange(1.0/6,5.0/6);
         swerveDebugDevice(500, "Right Front Servo", servoRightFront);
         servoLeftRear = hardwareMap.servo.get("LeftRearS");
-        servoLeftRear.scaleRange(1.0/6,5.0/6);
         swerveDebugDevice(500, "Left Rear Servo", servoLeftRear);
         servoRightRear = hardwareMap.servo.get("RightRearS");
-        servoRightRear.scaleRange(1.0/6,5.0/6);
         swerveDebugDevice(500, "Right Rear Servo", servoRightRear);
+        // -- squeezed to +/- 90 degrees, unless the drive is set to use their whole range
+        if (!SwerveDrive.SERVO_FULL_RANGE) {
+            servoLeftFront.scaleRange(1.0/6,5.0/6);
+            servoRightFront.scaleRange(1.0/6,5.0/6);
+            servoLeftRear.scaleRange(1.0/6,5.0/6);
+            servoRightRear.scaleRange(1.0/6,5.0/6);
+        }
 
 
 
@@ -252,6 +293,16 @@ public class SwerveCore extends OpMode {
 
         swerveDebug(500, "SwerveCore::init", "SERVOS connected");
 
+        // all the outputs we write often go through the cache
+        outputCache = new SwerveOutputCache(outputEpsilon);
+        climberOut = outputCache.motor(climber);
+        vSlideOut = outputCache.motor(vSlide);
+        hSlideOut = outputCache.motor(hSlide);
+        intakeOut = outputCache.motor(intake);
+        wristLOut = outputCache.servo(wristL);
+        wristROut = outputCache.servo(wristR);
+        dumpOut = outputCache.servo(dump);
+
 
         //Silver ball loader Servo
         //silverLoad = hardwareMap.servo.get("SilverLoader");
@@ -283,6 +334,11 @@ public class SwerveCore extends OpMode {
 
         swerveDebug(500,"Inertial management unit", "connected");
 
+        // read the IMU in the background from now on
+        imuSampler = new SwerveImuSampler(ourIMU, imuSampleRate);
+        imuSampler.sampleNow();
+        imuSampler.start();
+
 
 
         swerveDebug(500, "SwerveCore::init", "SENSORS connected");
@@ -290,11 +346,22 @@ public class SwerveCore extends OpMode {
         //
         // Connect up the swerve drive
         //
-        swerveRightFront = new SwerveWheel(motorRightFront, servoRightFront);
-        swerveLeftFront = new SwerveWheel(motorLeftFront, servoLeftFront);
-        swerveRightRear = new SwerveWheel(motorRightRear, servoRightRear);
-        swerveLeftRear = new SwerveWheel(motorLeftRear, servoLeftRear);
+        swerveRightFront = new SwerveWheel(motorRightFront, servoRightFront, outputCache);
+        swerveLeftFront = new SwerveWheel(motorLeftFront, servoLeftFront, outputCache);
+        swerveRightRear = new SwerveWheel(motorRightRear, servoRightRear, outputCache);
+        swerveLeftRear = new SwerveWheel(motorLeftRear, servoLeftRear, outputCache);
         ourSwerve = new SwerveDrive(swerveRightFront, swerveLeftFront, swerveLeftRear, swerveRightRear, 12, 12, ourIMU );
+        ourSwerve.setImuSampler(imuSampler);
+        ourSwerve.setBulkEncoders(encoders);
+
+        // the height sensor is kept off the drive schedule - only teleop uses it, and it reads it
+        // through update() in its own loop, so autonomous never pays for the distance read
+        heightSensor = new SwerveSensorScheduler.Sensor("height", heightReadWait, 1) {
+            @Override
+            protected void read() {
+                values[0] = heightL.getDistance(DistanceUnit.CM);
+            }
+        };
         swerveDebug(500, "SwerveCore::init", "swerve drive created");
 
         swerveReadAutoSettings();
@@ -323,6 +390,9 @@ public class SwerveCore extends OpMode {
         resetStartTime();
         runTime.reset();
 
+        // keep the pose on its own thread from here on
+        ourSwerve.startTracking();
+
         swerveDebug(500, "SwerveCore::start", "DONE");
     }
 
@@ -361,11 +431,32 @@ public class SwerveCore extends OpMode {
         // Nothing needs to be done for this OpMode.
         swerveDebug(500, "Stop", "SwerveCore::Stop run");
 
+        // no more timed work, commands, IMU reads, wheel management or tracking
+        timers.cancelAll();
+        commands.cancelAll();
+        if (imuSampler != null) {
+            imuSampler.stop();
+        }
+        if (ourSwerve != null) {
+            ourSwerve.setUseGradual(false);
+            ourSwerve.stopTracking();
+        }
+
         super.stop();
     }
 
 
 
+    // ***********************************************************************
+    // readEncoders
+    // ***********************************************************************
+    // Take this loop's encoder snapshot (one bulk read per hub).
+    // Call at the top of the loop, before anything looks at an encoder.
+    public void readEncoders() {
+        encoders.update();
+    }
+
+
     // ***********************************************************************
     // loopEndReporting
     // ***********************************************************************
@@ -391,7 +482,17 @@ public class SwerveCore extends OpMode {
         swerveLog( "X S6", ourSwerve.getOrientLog());
         swerveLog( "X S8", ourSwerve.getHeightLog());
         swerveLog( "X S9", ourSwerve.getGravXYZAccel());
-        swerveLog( "X S10", String.valueOf(vSlide.getCurrentPosition()));
+        swerveLog( "X S11", imuSampler.getStatsLog());
+        swerveLog( "X S12", ourSwerve.getSensorScheduler().getReadLog());
+        swerveLog( "X S13", outputCache.getStatsLog());
+        swerveLog( "X S14", encoders.getStatsLog());
+        swerveLog( "X S15", ourSwerve.getOdometryLog());
+        swerveLog( "X S16", ourSwerve.getTrackerLog());
+        swerveLog( "X S17", ourSwerve.getPoseFilterLog());
+        swerveLog( "X S18", ourSwerve.getSlipLog());
+        swerveLog( "X S19", ourSwerve.getPathLog());
+        swerveLog( "X S20", commands.getLog());
+        swerveLog( "X S10", String.valueOf(encoders.getPosition(vSlideEnc)));
     }
 
 
@@ -553,23 +654,19 @@ public class SwerveCore extends OpMode {
     }
 
     // ***********************************************************************
-    // swerveSleep
+    // runTimers
     // ***********************************************************************
-    // Go to sleep and wait, time is in milliseconds
-    public void swerveSleep(long millis ) {
-        double  startTime;
-        double  now;
-        long    delta;
-
-        swerveDebug(500, "SwerveCore::swerveSleep", "START, requested time is " + millis + "ms");
-
-        startTime = getRuntime();
-        do {
-            now = getRuntime();
-            delta = (long)((now - startTime) * 1000);
-        } while (delta < millis);
+    // Run any timed work that is due - call once per loop (and init_loop)
+    public void runTimers() {
+        timers.poll();
+    }
 
-        swerveDebug(500, "SwerveCore::swerveSleep", "DONE, elapsed time is " + delta + "ms");
+    // ***********************************************************************
+    // runCommands
+    // ***********************************************************************
+    // One step of every running command - call once per loop
+    public void runCommands() {
+        commands.run();
     }
 
 
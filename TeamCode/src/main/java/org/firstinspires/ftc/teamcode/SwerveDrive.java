@@ -45,9 +45,9 @@
 // team1251.org not working as of April, 2018)
 // Part of the swerve drive code from https://github.com/bob80333/swerve-drive
 // That code was created by Eric Engelhart on 3/20/2017
-
-
-// TODO: add separate task to manage the wheels to use the gradual speed (and position) change
+//
+// Gradual wheel changes (setUseGradual) are handled by a SwerveWheelManager, which ramps each
+// wheel toward the target set here on its own fixed-rate thread.
 
 package org.firstinspires.ftc.teamcode;
 
@@ -62,8 +62,6 @@ import org.firstinspires.ftc.robotcore.external.navigation.Orientation;
 
 import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
 
-import com.qualcomm.robotcore.util.ElapsedTime;
-
 import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
 
 import java.io.FileInputStream;
@@ -96,6 +94,8 @@ public class SwerveDrive {
     private double[] speeds;
     // Max speed is useful for several reasons
     private double maxSpeed;
+    // wheel speed and angle math for the drive base
+    private SwerveKinematics kinematics;
 
 
     // auto drive speed
@@ -104,8 +104,39 @@ public class SwerveDrive {
     private double autoOrient;
     private double autoDistance;
     private Boolean autoDone;
-    private double autoWheelMove[];
-    private double autoWheelLast[];
+    // keeps the robot turned to autoOrient while auto driving
+    private HeadingController autoHeading;
+    // auto turn in place
+    private double turnTarget;
+    private Boolean turnDone;
+    private Boolean turnTimedOut;
+    private long turnDeadline;
+    private HeadingController turnHeading;
+    // odometry path length when the auto drive started
+    private double autoStartPath;
+    // speed plan for the auto drive - speeds are in cm/sec, full power is about fullSpeedCm
+    private MotionProfile autoProfile;
+    private double fullSpeedCm = 150;
+    private double autoMaxAccel = 200;
+    private double autoMaxJerk = 800;
+    // slowest power we drive at, so the robot gets going and finishes the move
+    private double autoMinSpeed = 0.12;
+    // path being followed by the auto drive, null for a single straight move
+    private PathFollower autoPath;
+    // planned trajectory being followed by the auto drive, null if none
+    private Trajectory autoTrajectory;
+    private long trajectoryStart;
+    private Pose2d trajectoryTarget;
+    private double[] trajectorySpeed;
+    // speed added per cm we are off the trajectory (cm/sec per cm), how close is done (cm),
+    // and how long past the end we keep trying to get there (sec)
+    private double trajectoryGain = 2.0;
+    private double trajectoryTolerance = 3.0;
+    private double trajectoryOverTime = 1.0;
+    // planning - time step (sec), turn rate (deg/sec) and most steps in a route
+    private double planStep = 0.02;
+    private double planTurnRate = 90;
+    private int planMaxSteps = 500;
     private double deltaGravity=0;
     //Breaking test
     private double decrementSpeed;
@@ -113,54 +144,109 @@ public class SwerveDrive {
     // distance is in cm, we have 288 encoder ticks per rotation and a 6 inch wheel diameter
     // encoder ticks per cm of lateral distance
     private double wheelcm2encoder = ( 125 / ( 6 * 2.54 * Math.PI ) );
+    // auto drive distances were tuned on half the average of two wheels' travel,
+    // so a leg of N "cm" is really 2N cm of odometry travel
+    private static final double autoDistanceScale = 2.0;
+
+    // where the robot is on the field, from all four wheels and the IMU
+    private SwerveOdometry odometry;
+    private double[] moduleAngles;
+    // wheels that disagree with the others get less say in the odometry
+    private SwerveSlipDetector slipDetector;
+    // odometry on its own fixed rate thread (when running), and the recent poses
+    private SwerveOdometryTracker tracker;
+    private PoseHistory poseHistory;
+    private double trackRate = 100;
+    private int poseHistorySize = 200;
+    // tracking thread's own space, so it never shares with the loop
+    private double[] trackTicks;
+    private double[] trackAngles;
+    private SwerveImuSampler.Sample trackSample;
+    private Pose2d trackPose;
+    // odometry blended with the IMU (on the tracking thread)
+    private SwervePoseFilter poseFilter;
+    // copy of the pose for the loop, and for the loop's odometry updates
+    private Pose2d curPose;
+    private Pose2d sensorPose;
 
 
-    // ratio value between length and width for the drive base to adjust turns
-    private double frontRatio;
-    private double sideRatio;
-
     // logging data available for use
+    // -- the drive values are saved raw and only turned into strings when a log is read,
+    //    so the control loop does not pay for formatting nobody looks at
     private String modeLog;
-    private String moveLog;
-    private String moveAdjustLog;
-    private String speedLog;
-    private String angleLog;
-    private String orientationLog;
-    private String autoDriveLog;
     private String heightLog;
+    private boolean moveLogged;
+    private double logMoveX;
+    private double logMoveY;
+    private double logTurnX;
+    private double logTurnY;
+    private boolean moveAdjustLogged;
+    private double logAdjustAngle;
+    private boolean wheelsLogged;
+    private boolean orientationLogged;
+    private boolean autoDriveLogged;
+    private double logTargetAngle;
+    private double logMoveAngle;
 
     // IMU for heading when using movement automation
     private BNO055IMU imu;
     // and the angles from that IMU
     private Orientation angles;
     private Acceleration gravAngles;
+    // one snapshot of the wheel encoders per loop (when set)
+    private SwerveBulkEncoders bulkEncoders;
+    private int[] wheelEncoder;
+    // background reader for the IMU (when set, we never block on the IMU)
+    private SwerveImuSampler imuSampler;
+    private SwerveImuSampler.Sample imuSample;
 
 
     // TODO: BE SURE we are using degrees for the angle, or change the file read/write code
     // saved base orientation of the robot from the first wall
-    private double baseOrientationAngle;
+    private volatile double baseOrientationAngle;
     // file to save the base orientation angle in
     private String swerveAngleFile;
     // saved current (adjusted) orientation/heading
     double curHeading;
-    // when to run the next orientation
-    private double nextOrientationTime;
-    // measure time for the next update
-    private ElapsedTime swerveTime;
-    // how long to wait between changes
+    // how long to wait between orientation reads (ms)
     private float minOrientationWait;
+    // how long to wait between gravity and encoder reads (ms)
+    private float minGravityWait;
+    private float minEncoderWait;
+
+    // sensor reads on a schedule, so each loop only reads what is due
+    private SwerveSensorScheduler sensors;
+    private SwerveSensorScheduler.Sensor headingSensor;
+    private SwerveSensorScheduler.Sensor gravitySensor;
+    private SwerveSensorScheduler.Sensor encoderSensor;
 
     // scale the output based on servo angle capability
     // -- swerve base code plans +/- 90, servo is +/- 135, so scale back 50%
     // ***** TODO **** testing at 1:1 scale for now
 //    private double SWERVE_SCALE = ( 0.66667 / Math.PI );
     private double SWERVE_SCALE = ( 1.0 / Math.PI );
+    // The wheel servos should turn +/- 135 degrees, but that has not been measured on the robot.
+    // Until it is, they stay squeezed to +/- 90 degrees as they always were (SwerveCore scales
+    // their range to 1/6 - 5/6) and a wheel flips once past 90. Set this true once measured.
+    static final boolean SERVO_FULL_RANGE = false;
+    // over the whole range, 180 degrees of wheel is 2/3 of it, and a wheel may go on to 135
+    // degrees (0.75) before it has to flip
+    static final double SERVO_REACH = 0.75;
+    static final double SERVO_RANGE_SCALE = ( 2.0 / 3 );
+    // how fast the wheel servos turn (1.0 is 180 degrees a second)
+    static final double SERVO_RATE = 2.4;
     public final double DEG2BASE = ( Math.PI / 180 );
 
 
 
     // flag for using gradual motor changes rather than abrupt changes
     private Boolean useGradual;
+    // task that ramps the wheels when using gradual changes
+    private SwerveWheelManager wheelManager;
+    // wheel management rate (Hz) and slew limits (per second)
+    private double wheelManageRate = 100;
+    private double wheelMaxSpeedRate = 4.0;
+    private double wheelMaxPositionRate = 3.0;
 
     // string format for doubles in messages
     private String dblFormat = "%6.3f";
@@ -177,8 +263,7 @@ public class SwerveDrive {
     // The inertial management unit (IMU) built into the Rev hub gives magnetic robot orientation.
     public SwerveDrive(SwerveWheel rightFront, SwerveWheel leftFront, SwerveWheel leftBack, SwerveWheel rightBack,
                        double wheelBase, double trackWidth, BNO055IMU newImu ){
-        // diagonal length of the drive train
-        double driveTrainDiagonal;
+        int wheel;
 
         // Set the file for reading/saving the base orientation (robot to field)
         //  Note that the directory matches the other configs for the robot
@@ -193,47 +278,118 @@ public class SwerveDrive {
         swerveWheels[1] = leftFront;
         swerveWheels[2] = leftBack;
         swerveWheels[3] = rightBack;
+        for ( wheel = 0; wheel < swerveWheels.length; wheel++ ) {
+            if ( SERVO_FULL_RANGE ) {
+                swerveWheels[ wheel ].setServoLimits( SERVO_REACH, SERVO_RANGE_SCALE, SERVO_RATE );
+            } else {
+                swerveWheels[ wheel ].setServoLimits( 0.5, 1.0, SERVO_RATE );
+            }
+        }
 
-        // prepare a timer
-        swerveTime = new ElapsedTime();
-        swerveTime.reset();
-        // any movement needs to reorient
-        nextOrientationTime = 0;
-        // wait at least 30 milliseconds before adjusting settings
+        // wait at least 30 milliseconds before reading the orientation again
         minOrientationWait = 30;
+        // gravity is only for level checks, encoders are for distance
+        minGravityWait = 100;
+        minEncoderWait = 20;
 
         // Read the saved robot to field orientation value
         swerveReadAngle();
 
         // build relative movement for turning
-        driveTrainDiagonal = FastMath.sqrt( wheelBase*wheelBase + trackWidth*trackWidth );
-        frontRatio = wheelBase / driveTrainDiagonal;
-        sideRatio = trackWidth / driveTrainDiagonal;
+        kinematics = new SwerveKinematics( wheelBase, trackWidth, SWERVE_SCALE );
+        // and track the moves (wheelbase and trackwidth are in inches)
+        odometry = new SwerveOdometry( kinematics, 2.54, wheelcm2encoder );
+        moduleAngles = new double[ 4 ];
+        // slipping: over 0.3 cm + 25% of the move for 3 updates, clear after 5, 10% weight
+        slipDetector = new SwerveSlipDetector( 0.3, 0.25, 3, 5, 0.1 );
+        odometry.setSlipDetector( slipDetector );
+        poseHistory = new PoseHistory( poseHistorySize );
+        poseFilter = new SwervePoseFilter();
+        // the IMU turn rate is counter-clockwise positive, our heading is clockwise positive
+        // -- acceleration axes are taken as lined up with the robot, check if the hub is moved
+        poseFilter.setImuAxes( false, 1, 1, -1 );
+        tracker = new SwerveOdometryTracker( this, trackRate );
+        trackTicks = new double[ 4 ];
+        trackAngles = new double[ 4 ];
+        trackSample = new SwerveImuSampler.Sample();
+        trackPose = new Pose2d();
+        curPose = new Pose2d();
+        sensorPose = new Pose2d();
 
         // save the IMU for orientation
         this.imu = newImu;
+        imuSample = new SwerveImuSampler.Sample();
 
 
+        // schedule the drive sensors
+        sensors = new SwerveSensorScheduler();
+        headingSensor = sensors.add( new SwerveSensorScheduler.Sensor( "heading", minOrientationWait, 1 ) {
+            @Override
+            protected void read() {
+                checkOrientation();
+                values[ 0 ] = curHeading;
+            }
+        });
+        gravitySensor = sensors.add( new SwerveSensorScheduler.Sensor( "gravity", minGravityWait, 3 ) {
+            @Override
+            protected void read() {
+                readGravity();
+                values[ 0 ] = imuSample.gravX;
+                values[ 1 ] = imuSample.gravY;
+                values[ 2 ] = imuSample.gravZ;
+            }
+        });
+        encoderSensor = sensors.add( new SwerveSensorScheduler.Sensor( "encoders", minEncoderWait, 4 ) {
+            @Override
+            protected void read() {
+                int w;
+                if ( bulkEncoders != null ) {
+                    bulkEncoders.update();
+                    for ( w = 0; w < swerveWheels.length; w++ ) {
+                        values[ w ] = bulkEncoders.getPosition( wheelEncoder[ w ] );
+                    }
+                } else {
+                    for ( w = 0; w < swerveWheels.length; w++ ) {
+                        values[ w ] = swerveWheels[ w ].motor.getCurrentPosition();
+                    }
+                }
+
+                // every new encoder read moves the odometry along
+                // -- unless the tracking thread is doing it
+                if ( tracker.isRunning() ) {
+                    return;
+                }
+                headingSensor.update();
+                for ( w = 0; w < swerveWheels.length; w++ ) {
+                    moduleAngles[ w ] = swerveWheels[ w ].getEstimatedPosition() / SWERVE_SCALE;
+                }
+                odometry.update( values, moduleAngles, curHeading );
+                odometry.getPose( sensorPose );
+                poseHistory.add( odometry.getLastUpdateTime(), sensorPose );
+            }
+        });
+
         // default reporting is none
 
         modeLog = "(none)";
-        moveLog = "(none)";
-        moveAdjustLog = "(none)";
-        speedLog = "(none)";
-        angleLog = "(none)";
-        orientationLog = "(none)";
         heightLog = "(none)";
 
 
 
-        // space for remembering wheel distances
-        autoWheelMove = new double[ 5 ];
-        autoWheelLast = new double[ 5 ];
         autoDone = Boolean.TRUE;
+        autoProfile = new MotionProfile( 200 );
+        trajectoryTarget = new Pose2d();
+        trajectorySpeed = new double[ 2 ];
+        autoHeading = new HeadingController( 0.002, 0.0005, 0.0002, 0.01, 0.1 );
+        turnDone = Boolean.TRUE;
+        turnTimedOut = Boolean.FALSE;
+        turnHeading = new HeadingController( 0.004, 0.002, 0.0004, 0.08, 0.2 );
 
 
         // do not use gradual changes for wheels and servos
         useGradual = false;
+        wheelManager = new SwerveWheelManager( swerveWheels, wheelManageRate,
+                wheelMaxSpeedRate, wheelMaxPositionRate );
         // set default swerve mode
         curSwerveMode = swerveModes.SWERVE_AUTO;
     }
@@ -265,20 +421,82 @@ public class SwerveDrive {
         return modeLog;
     }
     public String getMoveLog() {
-        return moveLog;
+        if ( !moveLogged ) {
+            return "(none)";
+        }
+        return "MoveXY: " + String.format( dblFormat, logMoveX ) + ", "
+                + String.format( dblFormat, logMoveY )
+                + "  TurnXY: " + String.format( dblFormat, logTurnX ) + ", "
+                + String.format( dblFormat, logTurnY );
     }
     public String getMoveAdjustLog() {
-        return moveAdjustLog;
+        if ( !moveLogged ) {
+            return "(none)";
+        }
+        if ( !moveAdjustLogged ) {
+            return "Move Adj: (none)";
+        }
+        return "Move Adj: "
+                + String.format( dblFormat, curHeading )
+                + " ( " + String.format( dblFormat, logAdjustAngle ) + " ) ";
     }
     public String getSpeedLog() {
-        return speedLog;
+        if ( !wheelsLogged ) {
+            return "(none)";
+        }
+        return "Speed F L/R: " + String.format( dblFormat, speeds[1]) + " / "
+                + String.format( dblFormat, speeds[0])
+                + "  R L/R: " + String.format( dblFormat, speeds[3]) + ", "
+                + String.format( dblFormat, speeds[2]);
     }
     public String getAngleLog() {
-        return angleLog;
+        if ( !wheelsLogged ) {
+            return "(none)";
+        }
+        return "Angle F L/R: " + String.format( dblFormat, positions[1]) + " / "
+                + String.format( dblFormat, positions[0])
+                + "  R L/R: " + String.format( dblFormat, positions[3]) + ", "
+                + String.format( dblFormat, positions[2]);
+    }
+    public String getOrientLog() {
+        if ( !orientationLogged ) {
+            return "(none)";
+        }
+        return "Orient: "
+                + String.format( dblFormat, curHeading )
+                + "  Base: " + String.format( dblFormat, baseOrientationAngle );
+    }
+    public String getAutoDriveLog() {
+        if ( !autoDriveLogged ) {
+            return null;
+        }
+        return "target " + String.format( dblFormat, logTargetAngle) + " ( "
+                + String.format( dblFormat, autoAngle) + " ), radians "
+                + String.format( dblFormat, logMoveAngle);
     }
-    public String getOrientLog() { return orientationLog; }
-    public String getAutoDriveLog() { return autoDriveLog; }
     public String getHeightLog() { return heightLog; }
+    public String getOdometryLog() {
+        return odometry.getLog();
+    }
+    public String getPoseFilterLog() {
+        return poseFilter.getLog();
+    }
+    public String getSlipLog() {
+        return slipDetector.getLog();
+    }
+    public SwerveSlipDetector getSlipDetector() {
+        return slipDetector;
+    }
+    public String getPathLog() {
+        if ( autoTrajectory != null ) {
+            return "Trajectory: " + trajectoryTarget + String.format( "  %5.2f of %5.2f sec",
+                    ( System.nanoTime() - trajectoryStart ) / 1e9, autoTrajectory.getDuration() );
+        }
+        if ( autoPath == null ) {
+            return "Path: (none)";
+        }
+        return autoPath.getLog();
+    }
 
     // ***********************************************************************
     // setSwerveMode - update the base robot orientation
@@ -305,16 +523,161 @@ public class SwerveDrive {
 
         // be sure that the relative heading is left at zero
         curHeading = 0;
+        // and start tracking from here
+        odometry.reset( 0, 0, 0 );
+        slipDetector.reset();
+        poseFilter.reset();
+        poseHistory.clear();
 
         // and make this last across restarts until it is redone
         swerveWriteAngle();
     }
 
+    // ***********************************************************************
+    // getPose - where the robot is on the field (cm, degrees)
+    // ***********************************************************************
+    // A copy for the loop, good until the next call.
+    // While tracking, this is the filtered pose, otherwise straight odometry.
+    public Pose2d getPose() {
+        if ( tracker.isRunning() ) {
+            poseFilter.getPose( curPose );
+        } else {
+            odometry.getPose( curPose );
+        }
+        return curPose;
+    }
+    public SwervePoseFilter getPoseFilter() {
+        return poseFilter;
+    }
+    public SwerveOdometry getOdometry() {
+        return odometry;
+    }
+
+    // ***********************************************************************
+    // getPoseAt - where the robot was at a recent time (System.nanoTime)
+    // ***********************************************************************
+    // Returns false if there is no pose history yet.
+    public boolean getPoseAt( long timeNanos, Pose2d out ) {
+        return poseHistory.poseAt( timeNanos, out );
+    }
+    public PoseHistory getPoseHistory() {
+        return poseHistory;
+    }
+
+    // ***********************************************************************
+    // startTracking / stopTracking - odometry on its own thread
+    // ***********************************************************************
+    // While tracking, the odometry is no longer updated from the loop's encoder reads.
+    public void startTracking() {
+        tracker.start();
+    }
+    public void stopTracking() {
+        tracker.stop();
+    }
+    public String getTrackerLog() {
+        return tracker.getStatsLog();
+    }
+
+    // ***********************************************************************
+    // trackPose - read the wheels and heading, and move the odometry along
+    // ***********************************************************************
+    // Called from the tracking thread - uses only its own arrays and thread-safe reads.
+    void trackPose() {
+        double heading;
+        boolean imuGood;
+        boolean slipping;
+        long now;
+        int w;
+
+        if ( bulkEncoders != null ) {
+            bulkEncoders.update();
+            for ( w = 0; w < swerveWheels.length; w++ ) {
+                trackTicks[ w ] = bulkEncoders.getPosition( wheelEncoder[ w ] );
+            }
+        } else {
+            for ( w = 0; w < swerveWheels.length; w++ ) {
+                trackTicks[ w ] = swerveWheels[ w ].motor.getCurrentPosition();
+            }
+        }
+
+        // heading from the IMU sampler, or the loop's last heading without one
+        imuGood = ( imuSampler != null ) && imuSampler.read( trackSample );
+        if ( imuGood ) {
+            heading = - ( trackSample.heading - baseOrientationAngle );
+        } else {
+            heading = curHeading;
+        }
+
+        for ( w = 0; w < swerveWheels.length; w++ ) {
+            trackAngles[ w ] = swerveWheels[ w ].getEstimatedPosition() / SWERVE_SCALE;
+        }
+        odometry.update( trackTicks, trackAngles, heading );
+
+        // blend in the IMU, and save the result for looking back
+        now = odometry.getLastUpdateTime();
+        odometry.getPose( trackPose );
+        slipping = false;
+        for ( w = 0; w < swerveWheels.length; w++ ) {
+            slipping |= slipDetector.isSlipping( w );
+        }
+        poseFilter.update( now, trackPose, slipping, imuGood,
+                trackSample.accelX, trackSample.accelY, trackSample.yawRate );
+        poseFilter.getPose( trackPose );
+        poseHistory.add( now, trackPose );
+    }
+
+    // ***********************************************************************
+    // getSensorScheduler - the schedule for our sensor reads
+    // ***********************************************************************
+    // Other sensors on the robot can be added so they are read with the drive sensors.
+    public SwerveSensorScheduler getSensorScheduler() {
+        return sensors;
+    }
+
+    // ***********************************************************************
+    // setBulkEncoders - read the wheel encoders from a shared snapshot
+    // ***********************************************************************
+    public void setBulkEncoders( SwerveBulkEncoders newEncoders ) {
+        int w;
+
+        wheelEncoder = new int[ swerveWheels.length ];
+        for ( w = 0; w < swerveWheels.length; w++ ) {
+            wheelEncoder[ w ] = newEncoders.add( swerveWheels[ w ].motor );
+        }
+        bulkEncoders = newEncoders;
+        encoderSensor.invalidate();
+    }
+
+    // ***********************************************************************
+    // setImuSampler - read the IMU values from a background sampler
+    // ***********************************************************************
+    // Without a sampler (null) the IMU is read directly each time it is needed.
+    public void setImuSampler( SwerveImuSampler newSampler ) {
+        imuSampler = newSampler;
+    }
+
     // ***********************************************************************
     // setUseGradual - control use of gradual or immediate wheel changes
     // ***********************************************************************
     public void setUseGradual( Boolean newGradual) {
         useGradual = newGradual;
+
+        // the wheel manager only runs while gradual changes are on
+        if ( useGradual ) {
+            wheelManager.start();
+        } else {
+            wheelManager.stop();
+        }
+    }
+
+    // ***********************************************************************
+    // setGradualLimits - how fast wheels may change when using gradual changes
+    // ***********************************************************************
+    // Speed rate is power per second, position rate is servo range per second.
+    public void setGradualLimits( double maxSpeedRate, double maxPositionRate ) {
+        wheelMaxSpeedRate = maxSpeedRate;
+        wheelMaxPositionRate = maxPositionRate;
+        wheelManager.setSlewLimits( maxSpeedRate, maxPositionRate );
     }
 
     // ***********************************************************************
@@ -327,27 +690,16 @@ public class SwerveDrive {
         int wheel;          // wheel being updated
         double angle;       // angle for turning
 
-        // only adjust driving every so often
-        if ( nextOrientationTime > swerveTime.milliseconds()) {
-    /*  no messages of waiting for now
-            swerveLog( "driveRobot:: waiting for "
-                    + String.format( ".0f", swerveTime.milliseconds())
-                    + " to reach "
-                    + String.format( ".0f", nextOrientationTime );
-            return;
-    */
-        }
-        // note the next time we will adjust the driving
-        nextOrientationTime = minOrientationWait + swerveTime.milliseconds();
-
-        // check the orientation of the robot - for field-oriented driving
-        checkOrientation();
+        // read any sensors that are due - the orientation of the robot is only
+        // read every minOrientationWait, in between we drive on the last heading
+        sensors.poll();
 
         // note drive directions
-        moveLog = "MoveXY: " + String.format( dblFormat, moveX ) + ", "
-                + String.format( dblFormat, moveY )
-                + "  TurnXY: " + String.format( dblFormat, turnX ) + ", "
-                + String.format( dblFormat, turnY );
+        logMoveX = moveX;
+        logMoveY = moveY;
+        logTurnX = turnX;
+        logTurnY = turnY;
+        moveLogged = true;
 
         // if driving with field orietation automation, adjust for the robot orientation
         if (( curSwerveMode == swerveModes.SWERVE_DRIVER ) || ( curSwerveMode == swerveModes.SWERVE_DRIVE_ORIENT || ( curSwerveMode == swerveModes.SWERVE_DRIVE_TURN ) )) {
@@ -357,12 +709,11 @@ public class SwerveDrive {
             angle = FastMath.atan2( moveY, moveX ) - curHeading * DEG2BASE;
             angle = angle * DEG2BASE;
 
-            moveAdjustLog = "Move Adj: "
-                    + String.format( dblFormat, curHeading )
-                    + " ( " + String.format( dblFormat, angle ) + " ) ";
+            logAdjustAngle = angle;
+            moveAdjustLogged = true;
 
         } else {
-            moveAdjustLog = "Move Adj: (none)";
+            moveAdjustLogged = false;
         }
 
 
@@ -386,15 +737,26 @@ public class SwerveDrive {
         for (wheel = 0; wheel < swerveWheels.length; wheel++){
             // if the fastest wheel is almost stopped, just stop the robot
             if ( maxSpeed < 0.05 ) {
-                swerveWheels[wheel].updateWheel( 0, positions[wheel] );
+                setWheel( wheel, 0, positions[wheel] );
 
             // otherwise, set the target speed and position
             } else {
-                swerveWheels[wheel].updateWheel( speeds[wheel], positions[wheel] );
+                setWheel( wheel, speeds[wheel], positions[wheel] );
             }
         }
     }
 
+    // ***********************************************************************
+    // setWheel - move one wheel now, or set its target for gradual changes
+    // ***********************************************************************
+    private void setWheel( int wheel, double speed, double position ) {
+        if ( useGradual ) {
+            swerveWheels[wheel].setTarget( speed, position );
+        } else {
+            swerveWheels[wheel].updateWheel( speed, position );
+        }
+    }
+
 
     // ***********************************************************************
     // headless drive - move the robot in relation to the driver
@@ -466,8 +828,8 @@ public class SwerveDrive {
 
     boolean isRobotLevel() {
 
-        gravAngles = imu.getGravity();
-        if (Math.abs(gravAngles.zAccel) < .30+deltaGravity && Math.abs(gravAngles.yAccel) < .30+deltaGravity) {
+        gravitySensor.update();
+        if (Math.abs(gravitySensor.getValue(2)) < .30+deltaGravity && Math.abs(gravitySensor.getValue(1)) < .30+deltaGravity) {
          return true;
         }
         else{
@@ -480,8 +842,21 @@ public class SwerveDrive {
     // ***********************************************************************
 
     String getGravXYZAccel(){
-        gravAngles=imu.getGravity();
-        return("X: "+ gravAngles.xAccel+" Y: "+gravAngles.yAccel+" Z: "+gravAngles.zAccel);
+        gravitySensor.update();
+        return("X: "+ gravitySensor.getValue(0)+" Y: "+gravitySensor.getValue(1)+" Z: "+gravitySensor.getValue(2));
+    }
+
+    // ***********************************************************************
+    // readGravity - latest gravity values into imuSample
+    // ***********************************************************************
+    private void readGravity() {
+        if (( imuSampler != null ) && imuSampler.read( imuSample )) {
+            return;
+        }
+        gravAngles = imu.getGravity();
+        imuSample.gravX = gravAngles.xAccel;
+        imuSample.gravY = gravAngles.yAccel;
+        imuSample.gravZ = gravAngles.zAccel;
     }
 
     // ***********************************************************************
@@ -489,69 +864,28 @@ public class SwerveDrive {
     // ***********************************************************************
     void checkOrientation() {
         // read the orientation of the robot
-        angles = imu.getAngularOrientation(AxesReference.INTRINSIC, AxesOrder.ZYX, AngleUnit.DEGREES);
-
+        // -- use the latest background sample, only reading the IMU here if there is none
+        if (( imuSampler == null ) || !imuSampler.read( imuSample )) {
+            angles = imu.getAngularOrientation(AxesReference.INTRINSIC, AxesOrder.ZYX, AngleUnit.DEGREES);
+            imuSample.heading = angles.firstAngle;
+        }
 
         // and save the heading
-        curHeading = - ( angles.firstAngle - baseOrientationAngle );
+        curHeading = - ( imuSample.heading - baseOrientationAngle );
 
-        // log the orientation
-        orientationLog = "Orient: "
-                + String.format( dblFormat, curHeading )
-                + "  Base: " + String.format( dblFormat, baseOrientationAngle );
+        // note the orientation for the log
+        orientationLogged = true;
     }
 
     // ***********************************************************************
     // calculateWheels - calculate the speed and angle needed for each wheel
     // ***********************************************************************
     private void calculateWheels( double movementX, double movementY, double rotationRad ){
-        int nextSpeed;
-
-        // calculate x/y components for wheels 1 & 3 as thats all that's needed
-        double frontX = movementX - ( rotationRad * frontRatio );
-        double backX = movementX + ( rotationRad * frontRatio );
-        double rightY = movementY + ( rotationRad * sideRatio );
-        double leftY = movementY - ( rotationRad * sideRatio );
-
-        // calculate speed/rotation for each wheel
-        // TODO - why did wheels flip in new orientation?
-        // --- right front wheel
-        speeds[1]    = FastMath.sqrt( FastMath.pow2( frontX ) + FastMath.pow2( rightY ));
-        positions[1] = FastMath.atan2( frontX, rightY ) * SWERVE_SCALE;
-        // --- left front wheel
-        speeds[0]    = FastMath.sqrt( FastMath.pow2( frontX ) + FastMath.pow2( leftY ));
-        positions[0] = FastMath.atan2( frontX, leftY ) * SWERVE_SCALE;
-        // --- right rear wheel
-        speeds[3]    = FastMath.sqrt( FastMath.pow2( backX ) + FastMath.pow2( leftY ));
-        positions[3] = FastMath.atan2( backX, leftY ) * SWERVE_SCALE;
-        // --- left rear wheel
-        speeds[2]    = FastMath.sqrt( FastMath.pow2( backX ) + FastMath.pow2( rightY ));
-        positions[2] = FastMath.atan2( backX, rightY ) * SWERVE_SCALE;
-
-        // normalize speeds - always <= 1
-        maxSpeed = 0;
-        for ( nextSpeed = 0; nextSpeed < 4; nextSpeed++){
-            if (speeds[ nextSpeed ] > maxSpeed){
-                maxSpeed = speeds[ nextSpeed ];
-            }
-        }
-        // if max is > 1, scale all speeds back
-        if ( maxSpeed > 1 ){
-            for ( nextSpeed = 0; nextSpeed < 4; nextSpeed++){
-                speeds[ nextSpeed ] /= maxSpeed;
-            }
-            // and normalize the max
-            maxSpeed = 1;
-        }
+        // work done by the kinematics, straight into our wheel arrays
+        maxSpeed = kinematics.calculate( movementX, movementY, rotationRad, speeds, positions );
 
-        speedLog = "Speed F L/R: " + String.format( dblFormat, speeds[1]) + " / "
-                + String.format( dblFormat, speeds[0])
-                + "  R L/R: " + String.format( dblFormat, speeds[3]) + ", "
-                + String.format( dblFormat, speeds[2]);
-        angleLog = "Angle F L/R: " + String.format( dblFormat, positions[1]) + " / "
-                + String.format( dblFormat, positions[0])
-                + "  R L/R: " + String.format( dblFormat, positions[3]) + ", "
-                + String.format( dblFormat, positions[2]);
+        // speed and angle logs are built from these arrays when asked for
+        wheelsLogged = true;
     }
 
     // ***********************************************************************
@@ -583,6 +917,18 @@ public class SwerveDrive {
         driveRobot( 0.0, 0.0, 0.0, 0.0 );
     }
 
+    // ***********************************************************************
+    // setAutoProfile - how auto drives speed up and slow down
+    // ***********************************************************************
+    // fullSpeed is the robot speed (cm/sec) at full power, accel in cm/sec/sec and jerk in
+    // cm/sec/sec/sec (0 for no jerk limit). minSpeed is the lowest power used.
+    public void setAutoProfile( double fullSpeed, double maxAccel, double maxJerk, double minSpeed ) {
+        fullSpeedCm = fullSpeed;
+        autoMaxAccel = maxAccel;
+        autoMaxJerk = maxJerk;
+        autoMinSpeed = minSpeed;
+    }
+
     // ***********************************************************************
     // autoDrive
     // ***********************************************************************
@@ -590,33 +936,49 @@ public class SwerveDrive {
     // gradually orient the robot top to match the orientation given
     // go until target distance (in cm) is reached
     void autoDrive( double aSpeed, double aAngle, double aOrient, double aDist ) {
-        int w;
-
         autoSpeed = aSpeed;
         autoAngle = aAngle;
         autoOrient = aOrient;
-        autoDistance = aDist * wheelcm2encoder;
+        autoDistance = aDist * autoDistanceScale;
         autoDone = Boolean.FALSE;
+        autoPath = null;
+        autoTrajectory = null;
+        // one auto move at a time
+        turnDone = Boolean.TRUE;
 
-        // clear out the move counters
-        for ( w = 0; w < 3; w++ ) {
-            autoWheelLast[ w ] = swerveWheels[ w ].motor.getCurrentPosition();
-            autoWheelMove[ w ] = 0;
-        }
+        // heading control scales with the drive speed, as the old turn tiers did
+        autoHeading.setGains( aSpeed * 0.002, aSpeed * 0.0005, aSpeed * 0.0002, aSpeed * 0.01 );
+        autoHeading.setOutputLimit( aSpeed * 0.1 );
+        autoHeading.reset();
+
+        // measure the move from here
+        encoderSensor.refresh();
+        autoStartPath = odometry.getPathLength();
+
+        // plan the speeds for the whole move, aSpeed is the top speed
+        autoProfile.generate( autoDistance, aSpeed * fullSpeedCm, autoMaxAccel, autoMaxJerk );
 
         // update movement and check for done
         autoDriveCheck( Boolean.FALSE );
     }
 
+    // ***********************************************************************
+    // robotDriveAngle - field direction onto the robot
+    // ***********************************************************************
+    // Wheel direction in degrees, relative to the robot, to move along fieldAngle. Every auto
+    // drive uses this so they all agree on the heading.
+    private double robotDriveAngle( double fieldAngle ) {
+        return fieldAngle - curHeading + baseOrientationAngle;
+    }
+
     // ***********************************************************************
     // autoDriveCheck
     // ***********************************************************************
     // check for done on auto drive
     // if not done, update target movements from auto drive
     boolean autoDriveCheck( boolean forceStop ) {
-        int w;
-        double wNext;
-        double rDist;
+        double travelled;
+        double speed;
         double tAngle;
         double mAngle;
         double turnSpd;
@@ -631,18 +993,21 @@ public class SwerveDrive {
             return( Boolean.TRUE );
         }
 
-        // no distance so far;
-        rDist = 0;
-
-        for ( w = 0; w < 2; w++ ) {
-            wNext = swerveWheels[ w ].motor.getCurrentPosition();
-            autoWheelMove[ w ] += Math.abs( wNext - autoWheelLast[ w ]);
-            autoWheelLast[ w ] = wNext;
-            rDist += autoWheelMove[ w ];
+        // following a path or trajectory is checked on its own
+        if ( autoTrajectory != null ) {
+            return( autoTrajectoryCheck( forceStop ));
+        }
+        if ( autoPath != null ) {
+            return( autoFollowCheck( forceStop ));
         }
 
+        // distance so far, from the odometry
+        encoderSensor.update();
+
+        travelled = odometry.getPathLength() - autoStartPath;
+
         // check for move done
-        if (( rDist / 4 ) > autoDistance ) {
+        if ( travelled > autoDistance ) {
             autoDone = Boolean.TRUE;
 
             if ( forceStop ) {
@@ -652,34 +1017,30 @@ public class SwerveDrive {
         }
 
         // know our angles
-        checkOrientation();
+        headingSensor.update();
 
         // move based on angles
         // - get wheel target in degrees
-        tAngle = autoAngle - curHeading + baseOrientationAngle;
+        tAngle = robotDriveAngle( autoAngle );
         // - normalize and convert to radians
         mAngle = normalizeGyroAngle360( tAngle ) * DEG2BASE;
 
-        moveX = FastMath.sin( mAngle ) * autoSpeed;
-        moveY = FastMath.cos( mAngle ) * autoSpeed;
+        // planned speed for where we are in the move
+        speed = autoProfile.speedAt( travelled ) / fullSpeedCm;
+        if ( speed < Math.min( autoMinSpeed, autoSpeed )) {
+            speed = Math.min( autoMinSpeed, autoSpeed );
+        }
 
-        autoDriveLog = "target " + String.format( dblFormat, tAngle) + " ( "
-                + String.format( dblFormat, autoAngle) + " ), radians "
-                + String.format( dblFormat, mAngle);
+        moveX = FastMath.sin( mAngle ) * speed;
+        moveY = FastMath.cos( mAngle ) * speed;
 
-        // adjust heading based on orientation target
-        if (Math.abs(autoOrient - curHeading) > 60.0) {
-            turnSpd = autoSpeed * 0.1;
-        } else if (Math.abs(autoOrient - curHeading) > 20.0) {
-            turnSpd = autoSpeed * .05;
-        } else {
-            turnSpd = autoSpeed * .01;
-        }
-        if (autoOrient > curHeading) {
-            turnSpd = -turnSpd;
-        }
+        logTargetAngle = tAngle;
+        logMoveAngle = mAngle;
+        autoDriveLogged = true;
 
-        // TODO: fix auto orient
+        // adjust heading based on orientation target
+        // -- a positive turn speed turns toward a lower heading, so flip the controller output
+        turnSpd = -autoHeading.update( autoOrient, curHeading );
 
 
         // DEBUG - stop auto orient for now
@@ -692,6 +1053,264 @@ public class SwerveDrive {
     }
 
 
+    // ***********************************************************************
+    // autoPathStart / autoPathLeg - build a path for autoFollow
+    // ***********************************************************************
+    // The path starts where the robot is now. Each leg takes the same values as autoDrive,
+    // so a run of autoDrive moves can be turned into one path.
+    void autoPathStart( PathFollower path ) {
+        Pose2d pose;
+
+        encoderSensor.refresh();
+        pose = getPose();
+        path.clear();
+        path.addPoint( pose.x, pose.y, curHeading, 0 );
+    }
+    void autoPathLeg( PathFollower path, double aSpeed, double aAngle, double aOrient, double aDist ) {
+        path.addLeg( aAngle, aDist * autoDistanceScale, aOrient, aSpeed * fullSpeedCm );
+    }
+
+    // ***********************************************************************
+    // autoFollow
+    // ***********************************************************************
+    // drive the whole path without stopping at the waypoints, steering on the pose
+    // done once the end of the path is reached - checked with autoDriveCheck, like autoDrive
+    void autoFollow( PathFollower path ) {
+        autoPath = path;
+        autoTrajectory = null;
+        autoSpeed = Math.min( path.getMaxSpeed() / fullSpeedCm, 1.0 );
+        autoDone = Boolean.FALSE;
+        // one auto move at a time
+        turnDone = Boolean.TRUE;
+
+        autoHeading.setGains( autoSpeed * 0.002, autoSpeed * 0.0005, autoSpeed * 0.0002, autoSpeed * 0.01 );
+        autoHeading.setOutputLimit( autoSpeed * 0.1 );
+        autoHeading.reset();
+
+        path.setLimits( 20, autoMaxAccel, 3 );
+        path.start();
+
+        // update movement and check for done
+        autoDriveCheck( Boolean.FALSE );
+    }
+
+    // ***********************************************************************
+    // autoFollowCheck
+    // ***********************************************************************
+    // one step along the path - the same as autoDriveCheck, with the direction and speed
+    // from the path follower
+    private boolean autoFollowCheck( boolean forceStop ) {
+        double speed;
+        double tAngle;
+        double mAngle;
+        double turnSpd;
+        double moveX;
+        double moveY;
+
+        // where we are
+        encoderSensor.update();
+        headingSensor.update();
+
+        if ( autoPath.update( getPose() )) {
+            autoDone = Boolean.TRUE;
+
+            if ( forceStop ) {
+                stopRobot();
+            }
+            return( Boolean.TRUE );
+        }
+
+        // field direction from the path, onto the robot
+        autoAngle = autoPath.getMoveAngle();
+        tAngle = robotDriveAngle( autoAngle );
+        mAngle = normalizeGyroAngle360( tAngle ) * DEG2BASE;
+
+        speed = autoPath.getMoveSpeed() / fullSpeedCm;
+        if ( speed < Math.min( autoMinSpeed, autoSpeed )) {
+            speed = Math.min( autoMinSpeed, autoSpeed );
+        }
+
+        moveX = FastMath.sin( mAngle ) * speed;
+        moveY = FastMath.cos( mAngle ) * speed;
+
+        logTargetAngle = tAngle;
+        logMoveAngle = mAngle;
+        autoDriveLogged = true;
+
+        // heading for this leg - flip the output, the drive turns the other way
+        turnSpd = -autoHeading.update( autoPath.getTargetHeading(), curHeading );
+
+        driveRobot( moveX, moveY, turnSpd, 0.0 );
+
+        return( Boolean.FALSE );
+    }
+
+
+    // ***********************************************************************
+    // planTrajectory - plan a path ahead of time, with our drive limits
+    // ***********************************************************************
+    Trajectory planTrajectory( PathFollower path ) {
+        path.setLimits( 20, autoMaxAccel, 3 );
+        return TrajectoryCache.plan( path, planStep, autoMinSpeed * fullSpeedCm, planTurnRate, planMaxSteps );
+    }
+    // everything a plan depends on besides the waypoints, for the cache signature
+    double[] getPlanLimits() {
+        return new double[] { autoMaxAccel, autoMinSpeed * fullSpeedCm, planStep, planTurnRate, planMaxSteps };
+    }
+
+    // ***********************************************************************
+    // autoFollowTrajectory
+    // ***********************************************************************
+    // drive a planned trajectory by the clock - the planned speed, plus a push back toward
+    // where the plan says we should be. Waypoints are field positions, so the robot heads to
+    // the planned spots even if it starts a little off.
+    // done once the plan is over and we are at the end - checked with autoDriveCheck, like autoDrive
+    void autoFollowTrajectory( Trajectory trajectory ) {
+        autoTrajectory = trajectory;
+        autoPath = null;
+        trajectoryStart = System.nanoTime();
+        autoSpeed = 1.0;
+        autoDone = Boolean.FALSE;
+        // one auto move at a time
+        turnDone = Boolean.TRUE;
+
+        autoHeading.setGains( 0.002, 0.0005, 0.0002, 0.01 );
+        autoHeading.setOutputLimit( 0.1 );
+        autoHeading.reset();
+
+        // update movement and check for done
+        autoDriveCheck( Boolean.FALSE );
+    }
+
+    // ***********************************************************************
+    // autoTrajectoryCheck
+    // ***********************************************************************
+    private boolean autoTrajectoryCheck( boolean forceStop ) {
+        double t;
+        double errorX;
+        double errorY;
+        double error;
+        double speedX;
+        double speedY;
+        double speed;
+        double tAngle;
+        double mAngle;
+        double turnSpd;
+        Pose2d pose;
+
+        // where we are, and where we should be
+        encoderSensor.update();
+        headingSensor.update();
+        pose = getPose();
+
+        t = ( System.nanoTime() - trajectoryStart ) / 1e9;
+        autoTrajectory.sampleAt( t, trajectoryTarget, trajectorySpeed );
+        errorX = trajectoryTarget.x - pose.x;
+        errorY = trajectoryTarget.y - pose.y;
+        error = FastMath.sqrt(( errorX * errorX ) + ( errorY * errorY ));
+
+        // done once the plan is over and we got there (or ran out of extra time)
+        if (( t >= autoTrajectory.getDuration() )
+                && (( error <= trajectoryTolerance ) || ( t >= autoTrajectory.getDuration() + trajectoryOverTime ))) {
+            autoDone = Boolean.TRUE;
+
+            if ( forceStop ) {
+                stopRobot();
+            }
+            return( Boolean.TRUE );
+        }
+
+        // planned speed, and a push back onto the plan
+        speedX = trajectorySpeed[ 0 ] + ( trajectoryGain * errorX );
+        speedY = trajectorySpeed[ 1 ] + ( trajectoryGain * errorY );
+        speed = FastMath.sqrt(( speedX * speedX ) + ( speedY * speedY )) / fullSpeedCm;
+        if ( speed > 1.0 ) {
+            speed = 1.0;
+        }
+        if (( speed < autoMinSpeed ) && ( error > trajectoryTolerance )) {
+            speed = autoMinSpeed;
+        }
+
+        // field direction, onto the robot
+        autoAngle = FastMath.toDegrees( FastMath.atan2( speedX, speedY ));
+        tAngle = robotDriveAngle( autoAngle );
+        mAngle = normalizeGyroAngle360( tAngle ) * DEG2BASE;
+
+        logTargetAngle = tAngle;
+        logMoveAngle = mAngle;
+        autoDriveLogged = true;
+
+        // planned heading - flip the output, the drive turns the other way
+        turnSpd = -autoHeading.update( trajectoryTarget.heading, curHeading );
+
+        driveRobot( FastMath.sin( mAngle ) * speed, FastMath.cos( mAngle ) * speed, turnSpd, 0.0 );
+
+        return( Boolean.FALSE );
+    }
+
+
+    // ***********************************************************************
+    // autoTurn
+    // ***********************************************************************
+    // start turning the robot in place to the heading given (degrees)
+    // the turn is done once the heading settles, or the timeout (ms) runs out
+    // nothing moves until autoTurnCheck is called, once per loop
+    void autoTurn( double aOrient, double timeoutMs ) {
+        turnTarget = aOrient;
+        turnDone = Boolean.FALSE;
+        turnTimedOut = Boolean.FALSE;
+        turnDeadline = System.nanoTime() + (long)( timeoutMs * 1e6 );
+        turnHeading.reset();
+
+        // one auto move at a time
+        autoDone = Boolean.TRUE;
+    }
+
+    // ***********************************************************************
+    // autoTurnCheck
+    // ***********************************************************************
+    // check for done on auto turn
+    // if not done, turn a little more toward the target
+    boolean autoTurnCheck( boolean forceStop ) {
+        double turnSpd;
+
+        if ( turnDone ) {
+            if ( forceStop ) {
+                stopRobot();
+            }
+
+            return( Boolean.TRUE );
+        }
+
+        // the heading is all we steer by here, so always take a fresh one
+        headingSensor.refresh();
+
+        // heading control - flip the output, the drive turns the other way
+        turnSpd = -turnHeading.update( turnTarget, curHeading );
+
+        // check for turn done, or out of time
+        if ( turnHeading.isSettled() || ( System.nanoTime() - turnDeadline >= 0 )) {
+            turnTimedOut = !turnHeading.isSettled();
+            turnDone = Boolean.TRUE;
+
+            if ( forceStop ) {
+                stopRobot();
+            }
+            return( Boolean.TRUE );
+        }
+
+        // turn the robot
+        driveRobot( 0.0, 0.0, turnSpd, 0.0 );
+
+        return( Boolean.FALSE );
+    }
+
+    // did the last auto turn run out of time before it settled?
+    boolean autoTurnTimedOut() {
+        return turnTimedOut;
+    }
+
+
     //Simply hypothetical concept for "breaking" code created *11/01/2018 08:45*
  //   void autoBreak( double decSpeed ) {
 
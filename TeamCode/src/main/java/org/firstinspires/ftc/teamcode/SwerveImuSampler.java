@@ -0,0 +1,267 @@
+// ***********************************************************************
+// SwerveImuSampler
+// ***********************************************************************
+// Reads the IMU in the Rev hub on its own thread.
+//
+// Every I2C read of the BNO055 blocks until the bus transaction is done. Rather than make the
+// control loop wait for the IMU several times per pass, this thread reads the IMU at a fixed
+// rate and publishes the latest values. The loop just picks up the most recent sample, which
+// never blocks.
+//
+// Each read is its own I2C transaction, so a sample only reads what changes quickly: the
+// orientation and the linear acceleration. The turn rate is worked out from the heading change
+// between samples, and gravity (only used to check the robot is level) is read every
+// GRAVITY_EVERY samples. getStatsLog() shows the real time between samples, which should be
+// checked against the rate on the robot.
+//
+// The values are shared with a sequence lock (seqlock). The writer bumps the sequence to an odd
+// number, writes the values, then bumps it back to even. A reader copies the values and checks
+// that the sequence was the same even number before and after; if not, it just tries again.
+// Nothing is allocated by the reader.
+
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.hardware.bosch.BNO055IMU;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.robotcore.external.navigation.Acceleration;
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.AxesOrder;
+import org.firstinspires.ftc.robotcore.external.navigation.AxesReference;
+import org.firstinspires.ftc.robotcore.external.navigation.Orientation;
+
+// ***********************************************************************
+// SwerveImuSampler
+// ***********************************************************************
+// Class definitions
+public class SwerveImuSampler {
+
+    // ***********************************************************************
+    // Sample - one copy of the IMU values
+    // ***********************************************************************
+    // Callers keep their own Sample and have it filled in by read().
+    public static class Sample {
+        // System.nanoTime() when the values were read
+        public long timeNanos;
+        // orientation, in degrees (intrinsic ZYX)
+        public double heading;
+        public double roll;
+        public double pitch;
+        // gravity, in m/s/s
+        public double gravX;
+        public double gravY;
+        public double gravZ;
+        // acceleration without gravity, in m/s/s (IMU axes)
+        public double accelX;
+        public double accelY;
+        public double accelZ;
+        // turn rate about the IMU Z axis, in degrees/sec (same direction as heading)
+        public double yawRate;
+    }
+
+    // read gravity once every this many samples
+    static final int GRAVITY_EVERY = 10;
+
+    // IMU we are reading
+    private final BNO055IMU imu;
+
+    // the last sample, for the turn rate - only used while holding the lock
+    private long lastHeadingTime;
+    private double lastHeading;
+
+    // the shared values - all volatile so the seqlock holds on every device
+    private volatile int sequence;
+    private volatile long sampleTime;
+    private volatile double sampleHeading;
+    private volatile double sampleRoll;
+    private volatile double samplePitch;
+    private volatile double sampleGravX;
+    private volatile double sampleGravY;
+    private volatile double sampleGravZ;
+    private volatile double sampleAccelX;
+    private volatile double sampleAccelY;
+    private volatile double sampleAccelZ;
+    private volatile double sampleYawRate;
+
+    // stats on how long the I2C reads take
+    private volatile long sampleCount;
+    private volatile long lastReadNanos;
+    private volatile long maxReadNanos;
+    private volatile long totalReadNanos;
+
+    // thread that does the reading
+    private final SwerveRateRunner runner;
+
+    // ***********************************************************************
+    // SwerveImuSampler - set up the sampler for an IMU
+    // ***********************************************************************
+    // The sampler does not run until start() is called.
+    public SwerveImuSampler( BNO055IMU useImu, double sampleRateHz ) {
+        this.imu = useImu;
+        runner = new SwerveRateRunner( "SwerveImuSampler", sampleRateHz, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sampleNow();
+                } catch (RuntimeException e) {
+                    // a bad read is skipped, the next one may work
+                    RobotLog.e( "SwerveImuSampler: read failed " + e );
+                }
+            }
+        });
+    }
+
+    // ***********************************************************************
+    // setSampleRate - change how often the IMU is read
+    // ***********************************************************************
+    public void setSampleRate( double sampleRateHz ) {
+        runner.setRate( sampleRateHz );
+    }
+
+    // ***********************************************************************
+    // start - begin reading in the background
+    // ***********************************************************************
+    public void start() {
+        runner.start();
+    }
+
+    // ***********************************************************************
+    // stop - end the background reads and wait for the thread
+    // ***********************************************************************
+    public void stop() {
+        runner.stop();
+    }
+
+    // ***********************************************************************
+    // sampleNow - read the IMU and publish the values
+    // ***********************************************************************
+    // Normally called by the sampling thread. Can also be called directly (for example in init
+    // before the thread runs) to get a fresh sample right away.
+    public synchronized void sampleNow() {
+        long readStart;
+        long readTime;
+        Orientation angles;
+        long readAt;
+        Acceleration gravity = null;
+        Acceleration linear;
+        double yawRate;
+
+        readStart = System.nanoTime();
+        angles = imu.getAngularOrientation( AxesReference.INTRINSIC, AxesOrder.ZYX, AngleUnit.DEGREES );
+        linear = imu.getLinearAcceleration();
+        if (( sampleCount % GRAVITY_EVERY ) == 0 ) {
+            gravity = imu.getGravity();
+        }
+        readTime = System.nanoTime() - readStart;
+        readAt = readStart + readTime / 2;
+
+        // turn rate from the heading change, rather than another read
+        if ( lastHeadingTime == 0 ) {
+            yawRate = 0;
+        } else {
+            yawRate = HeadingController.normalize180( angles.firstAngle - lastHeading )
+                    / (( readAt - lastHeadingTime ) / 1e9 );
+        }
+        lastHeading = angles.firstAngle;
+        lastHeadingTime = readAt;
+
+        // publish - odd sequence means a write is happening
+        sequence++;
+        sampleTime = readAt;
+        sampleHeading = angles.firstAngle;
+        sampleRoll = angles.secondAngle;
+        samplePitch = angles.thirdAngle;
+        if ( gravity != null ) {
+            sampleGravX = gravity.xAccel;
+            sampleGravY = gravity.yAccel;
+            sampleGravZ = gravity.zAccel;
+        }
+        sampleAccelX = linear.xAccel;
+        sampleAccelY = linear.yAccel;
+        sampleAccelZ = linear.zAccel;
+        sampleYawRate = yawRate;
+        sequence++;
+
+        // stats
+        lastReadNanos = readTime;
+        totalReadNanos += readTime;
+        if ( readTime > maxReadNanos ) {
+            maxReadNanos = readTime;
+        }
+        sampleCount++;
+    }
+
+    // ***********************************************************************
+    // hasSample - has anything been read yet?
+    // ***********************************************************************
+    public boolean hasSample() {
+        return sampleCount > 0;
+    }
+
+    // ***********************************************************************
+    // read - copy the latest sample
+    // ***********************************************************************
+    // Returns false if nothing has been read yet.
+    public boolean read( Sample out ) {
+        int before;
+        int after;
+
+        if ( !hasSample() ) {
+            return false;
+        }
+
+        do {
+            before = sequence;
+            out.timeNanos = sampleTime;
+            out.heading = sampleHeading;
+            out.roll = sampleRoll;
+            out.pitch = samplePitch;
+            out.gravX = sampleGravX;
+            out.gravY = sampleGravY;
+            out.gravZ = sampleGravZ;
+            out.accelX = sampleAccelX;
+            out.accelY = sampleAccelY;
+            out.accelZ = sampleAccelZ;
+            out.yawRate = sampleYawRate;
+            after = sequence;
+        } while (( before != after ) || (( before & 1 ) != 0 ));
+
+        return true;
+    }
+
+    // ***********************************************************************
+    // stats for reporting
+    // ***********************************************************************
+    // age of the latest sample, in milliseconds
+    public double getSampleAgeMs() {
+        if ( !hasSample() ) {
+            return -1;
+        }
+        return ( System.nanoTime() - sampleTime ) / 1e6;
+    }
+    public double getLastReadMs() {
+        return lastReadNanos / 1e6;
+    }
+    public double getMaxReadMs() {
+        return maxReadNanos / 1e6;
+    }
+    public double getAverageReadMs() {
+        long count = sampleCount;
+        if ( count == 0 ) {
+            return 0;
+        }
+        return ( totalReadNanos / count ) / 1e6;
+    }
+    public long getSampleCount() {
+        return sampleCount;
+    }
+    public String getStatsLog() {
+        return "IMU samples: " + sampleCount
+                + "  age: " + String.format( "%.1f", getSampleAgeMs() )
+                + "ms  read avg/max: " + String.format( "%.1f", getAverageReadMs() )
+                + " / " + String.format( "%.1f", getMaxReadMs() ) + "ms"
+                + "  period " + String.format( "%.1f", runner.getAveragePeriodMs() )
+                + " (want " + String.format( "%.1f", runner.getTargetPeriodMs() ) + ")ms"
+                + "  late: " + runner.getLateCount();
+    }
+}
@@ -0,0 +1,129 @@
+// ***********************************************************************
+// SwerveKinematics
+// ***********************************************************************
+// Inverse kinematics for our 4 wheel swerve drive.
+//
+// Takes a chassis command (move X/Y and rotation) and works out the speed and servo position
+// for each of the four wheels. The results are written into arrays owned by the caller, so the
+// calculation does not create any objects. This matters because it runs on every control loop.
+//
+// Wheel slots match the order used by SwerveDrive:
+//     0 is rightFront
+//     1 is leftFront
+//     2 is leftBack
+//     3 is rightBack
+//
+// *** DERIVED FROM ***
+// GREAT data on swerve drive design found here: https://www.chiefdelphi.com/media/papers/2426
+// Posted by Ether starting in 2011.
+
+package org.firstinspires.ftc.teamcode;
+
+// ***********************************************************************
+// SwerveKinematics
+// ***********************************************************************
+// Class definitions
+public class SwerveKinematics {
+
+    // number of wheels on the drive
+    static final int WHEEL_COUNT = 4;
+
+    // ratio value between length and width for the drive base to adjust turns
+    private final double frontRatio;
+    private final double sideRatio;
+
+    // scale from wheel angle (radians) to our servo position
+    private final double swerveScale;
+
+    // distance from the center to each wheel (wheelbase/trackwidth units)
+    private final double turnRadius;
+    // which way each wheel moves (unit X/Y) for a positive rotation
+    private final double[] rotateX;
+    private final double[] rotateY;
+
+    // ***********************************************************************
+    // SwerveKinematics - build the kinematics for a drive base
+    // ***********************************************************************
+    // The wheelbase and trackwidth are used to calculate the impact of any rotation angles.
+    public SwerveKinematics( double wheelBase, double trackWidth, double useSwerveScale ) {
+        // diagonal length of the drive train
+        double driveTrainDiagonal;
+
+        driveTrainDiagonal = FastMath.sqrt( wheelBase*wheelBase + trackWidth*trackWidth );
+        frontRatio = wheelBase / driveTrainDiagonal;
+        sideRatio = trackWidth / driveTrainDiagonal;
+
+        swerveScale = useSwerveScale;
+
+        // the rotation parts of calculate(), one wheel at a time
+        turnRadius = driveTrainDiagonal / 2;
+        rotateX = new double[] { -frontRatio, -frontRatio, frontRatio, frontRatio };
+        rotateY = new double[] { -sideRatio, sideRatio, sideRatio, -sideRatio };
+    }
+
+    // ***********************************************************************
+    // rotation geometry - used to take the turning out of wheel moves
+    // ***********************************************************************
+    public double getTurnRadius() {
+        return turnRadius;
+    }
+    public double getRotateX( int wheel ) {
+        return rotateX[ wheel ];
+    }
+    public double getRotateY( int wheel ) {
+        return rotateY[ wheel ];
+    }
+    public double getSwerveScale() {
+        return swerveScale;
+    }
+
+    // ***********************************************************************
+    // calculate - speed and position for each wheel
+    // ***********************************************************************
+    // Fills in speeds and positions (both need at least 4 slots).
+    // Speeds are normalized so none is over 1. Returns the fastest wheel speed after normalizing.
+    public double calculate( double movementX, double movementY, double rotationRad,
+                             double[] speeds, double[] positions ) {
+        int nextSpeed;
+        double maxSpeed;
+
+        // calculate x/y components for wheels 1 & 3 as thats all that's needed
+        double frontX = movementX - ( rotationRad * frontRatio );
+        double backX = movementX + ( rotationRad * frontRatio );
+        double rightY = movementY + ( rotationRad * sideRatio );
+        double leftY = movementY - ( rotationRad * sideRatio );
+
+        // calculate speed/rotation for each wheel
+        // TODO - why did wheels flip in new orientation?
+        // --- right front wheel
+        speeds[1]    = FastMath.sqrt( FastMath.pow2( frontX ) + FastMath.pow2( rightY ));
+        positions[1] = FastMath.atan2( frontX, rightY ) * swerveScale;
+        // --- left front wheel
+        speeds[0]    = FastMath.sqrt( FastMath.pow2( frontX ) + FastMath.pow2( leftY ));
+        positions[0] = FastMath.atan2( frontX, leftY ) * swerveScale;
+        // --- right rear wheel
+        speeds[3]    = FastMath.sqrt( FastMath.pow2( backX ) + FastMath.pow2( leftY ));
+        positions[3] = FastMath.atan2( backX, leftY ) * swerveScale;
+        // --- left rear wheel
+        speeds[2]    = FastMath.sqrt( FastMath.pow2( backX ) + FastMath.pow2( rightY ));
+        positions[2] = FastMath.atan2( backX, rightY ) * swerveScale;
+
+        // normalize speeds - always <= 1
+        maxSpeed = 0;
+        for ( nextSpeed = 0; nextSpeed < WHEEL_COUNT; nextSpeed++){
+            if (speeds[ nextSpeed ] > maxSpeed){
+                maxSpeed = speeds[ nextSpeed ];
+            }
+        }
+        // if max is > 1, scale all speeds back
+        if ( maxSpeed > 1 ){
+            for ( nextSpeed = 0; nextSpeed < WHEEL_COUNT; nextSpeed++){
+                speeds[ nextSpeed ] /= maxSpeed;
+            }
+            // and normalize the max
+            maxSpeed = 1;
+        }
+
+        return maxSpeed;
+    }
+}
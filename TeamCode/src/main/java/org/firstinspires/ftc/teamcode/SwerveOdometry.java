@@ -0,0 +1,246 @@
+// ***********************************************************************
+// SwerveOdometry
+// ***********************************************************************
+// Tracks where the robot is on the field from the wheel encoders and the IMU heading.
+//
+// Each update takes the encoder counts and wheel angles for all four wheels, and the heading:
+//      - each wheel's move since the last update is its encoder change (in cm) along its angle
+//      - the part of that move that comes from the robot turning is taken out, using the
+//        heading change and where the wheel sits on the robot
+//      - what is left is the same for every wheel if nothing slips, so they are averaged
+//        (each wheel can be given a weight, to trust some wheels less, and a slip detector
+//        can turn down the weight of a wheel that disagrees with the others)
+//      - the robot move is turned to the field using the heading half way through the move
+//
+// Wheel angles are in radians, measured the same way as SwerveKinematics: 0 is straight ahead
+// (+Y) and angles grow toward +X. The heading grows the same way, so field X/Y match autoDrive.
+//
+// Nothing is created after construction, so this can run on every control loop.
+//
+// Updates can come from the tracking thread while the loop reads the pose, so the methods that
+// touch the pose are synchronized.
+
+package org.firstinspires.ftc.teamcode;
+
+// ***********************************************************************
+// SwerveOdometry
+// ***********************************************************************
+// Class definitions
+public class SwerveOdometry {
+
+    // number of wheels on the drive
+    static final int WHEEL_COUNT = SwerveKinematics.WHEEL_COUNT;
+    static final double DEG2RAD = ( Math.PI / 180 );
+
+    // encoder counts per cm of wheel travel
+    private final double ticksPerCm;
+    // wheel placement - turn radius (cm) and move direction for a positive rotation
+    private final double turnRadius;
+    private final double[] rotateX;
+    private final double[] rotateY;
+    // a positive rotation command turns the heading down, so wheels move opposite for +heading
+    private final double rotateSign;
+
+    // how much to trust each wheel (0 to ignore)
+    private final double[] weights;
+    // slip detection (when set) and the weight scale it gives each wheel
+    private SwerveSlipDetector slipDetector;
+    private final double[] slipScale;
+
+    // last encoder counts and heading
+    private final double[] lastTicks;
+    private double lastHeading;
+    private boolean started;
+
+    // each wheel's last move (cm, robot frame) with the turning taken out
+    private final double[] moduleDx;
+    private final double[] moduleDy;
+
+    // where we are, and how far we have gone (cm, any direction)
+    private final Pose2d pose;
+    private double pathLength;
+    private long updateCount;
+    private long lastUpdateNanos;
+
+    // ***********************************************************************
+    // SwerveOdometry - set up tracking for a drive base
+    // ***********************************************************************
+    // The kinematics give the wheel placement, cmPerUnit turns its units into cm.
+    public SwerveOdometry( SwerveKinematics kinematics, double cmPerUnit, double useTicksPerCm ) {
+        int w;
+
+        ticksPerCm = useTicksPerCm;
+        turnRadius = kinematics.getTurnRadius() * cmPerUnit;
+        rotateSign = -1;
+
+        rotateX = new double[ WHEEL_COUNT ];
+        rotateY = new double[ WHEEL_COUNT ];
+        weights = new double[ WHEEL_COUNT ];
+        lastTicks = new double[ WHEEL_COUNT ];
+        moduleDx = new double[ WHEEL_COUNT ];
+        moduleDy = new double[ WHEEL_COUNT ];
+        slipScale = new double[ WHEEL_COUNT ];
+        for ( w = 0; w < WHEEL_COUNT; w++ ) {
+            slipScale[ w ] = 1.0;
+            rotateX[ w ] = kinematics.getRotateX( w );
+            rotateY[ w ] = kinematics.getRotateY( w );
+            weights[ w ] = 1.0;
+        }
+
+        pose = new Pose2d();
+        reset( 0, 0, 0 );
+    }
+
+    // ***********************************************************************
+    // reset - start tracking again from a known pose
+    // ***********************************************************************
+    // The next update only takes its starting encoder counts.
+    public synchronized void reset( double newX, double newY, double newHeading ) {
+        pose.set( newX, newY, newHeading );
+        pathLength = 0;
+        started = false;
+    }
+
+    // ***********************************************************************
+    // setSlipDetector - check the wheels against each other on every update
+    // ***********************************************************************
+    public synchronized void setSlipDetector( SwerveSlipDetector newDetector ) {
+        int w;
+
+        slipDetector = newDetector;
+        for ( w = 0; w < WHEEL_COUNT; w++ ) {
+            slipScale[ w ] = 1.0;
+        }
+    }
+
+    // ***********************************************************************
+    // setWeight - how much to trust a wheel (1 is normal, 0 ignores it)
+    // ***********************************************************************
+    public synchronized void setWeight( int wheel, double newWeight ) {
+        weights[ wheel ] = ( newWeight < 0 ) ? 0 : newWeight;
+    }
+    public synchronized double getWeight( int wheel ) {
+        return weights[ wheel ];
+    }
+
+    // ***********************************************************************
+    // update - add the move since the last update
+    // ***********************************************************************
+    // ticks are the wheel encoder counts, angles the wheel angles (radians), heading in degrees.
+    public synchronized void update( double[] ticks, double[] angles, double heading ) {
+        double turn;
+        double midHeading;
+        double dist;
+        double robotX;
+        double robotY;
+        double totalWeight;
+        double sinH;
+        double cosH;
+        double fieldX;
+        double fieldY;
+        int w;
+
+        lastUpdateNanos = System.nanoTime();
+        updateCount++;
+
+        if ( !started ) {
+            for ( w = 0; w < WHEEL_COUNT; w++ ) {
+                lastTicks[ w ] = ticks[ w ];
+                moduleDx[ w ] = 0;
+                moduleDy[ w ] = 0;
+            }
+            lastHeading = heading;
+            pose.heading = heading;
+            started = true;
+            return;
+        }
+
+        // heading change (radians), shortest way around
+        turn = HeadingController.normalize180( heading - lastHeading ) * DEG2RAD;
+
+        for ( w = 0; w < WHEEL_COUNT; w++ ) {
+            // wheel move along its angle
+            dist = ( ticks[ w ] - lastTicks[ w ] ) / ticksPerCm;
+            lastTicks[ w ] = ticks[ w ];
+
+            // less the part from turning
+            moduleDx[ w ] = ( dist * FastMath.sin( angles[ w ] ))
+                    - ( rotateSign * turn * turnRadius * rotateX[ w ] );
+            moduleDy[ w ] = ( dist * FastMath.cos( angles[ w ] ))
+                    - ( rotateSign * turn * turnRadius * rotateY[ w ] );
+        }
+
+        // trust slipping wheels less
+        if ( slipDetector != null ) {
+            slipDetector.check( moduleDx, moduleDy, slipScale );
+        }
+
+        robotX = 0;
+        robotY = 0;
+        totalWeight = 0;
+        for ( w = 0; w < WHEEL_COUNT; w++ ) {
+            robotX += weights[ w ] * slipScale[ w ] * moduleDx[ w ];
+            robotY += weights[ w ] * slipScale[ w ] * moduleDy[ w ];
+            totalWeight += weights[ w ] * slipScale[ w ];
+        }
+        lastHeading = heading;
+        pose.heading = heading;
+
+        // no wheels to trust - heading only
+        if ( totalWeight <= 0 ) {
+            return;
+        }
+        robotX /= totalWeight;
+        robotY /= totalWeight;
+
+        // robot move onto the field, at the heading half way through the move
+        midHeading = ( heading * DEG2RAD ) - ( turn / 2 );
+        sinH = FastMath.sin( midHeading );
+        cosH = FastMath.cos( midHeading );
+        fieldX = ( robotX * cosH ) + ( robotY * sinH );
+        fieldY = ( robotY * cosH ) - ( robotX * sinH );
+
+        pose.x += fieldX;
+        pose.y += fieldY;
+        pathLength += FastMath.sqrt( FastMath.pow2( fieldX ) + FastMath.pow2( fieldY ));
+    }
+
+    // ***********************************************************************
+    // results
+    // ***********************************************************************
+    // The pose is updated in place, so copy it out to keep it.
+    public synchronized void getPose( Pose2d out ) {
+        out.set( pose );
+    }
+    public synchronized double getX() {
+        return pose.x;
+    }
+    public synchronized double getY() {
+        return pose.y;
+    }
+    public synchronized double getHeading() {
+        return pose.heading;
+    }
+    // total distance moved (cm) since the last reset
+    public synchronized double getPathLength() {
+        return pathLength;
+    }
+    // last move of one wheel (cm, robot frame), with the turning taken out
+    public synchronized double getModuleDx( int wheel ) {
+        return moduleDx[ wheel ];
+    }
+    public synchronized double getModuleDy( int wheel ) {
+        return moduleDy[ wheel ];
+    }
+    public synchronized long getUpdateCount() {
+        return updateCount;
+    }
+    // System.nanoTime() of the last update
+    public synchronized long getLastUpdateTime() {
+        return lastUpdateNanos;
+    }
+
+    public synchronized String getLog() {
+        return "Pose: " + pose + "  path " + String.format( "%6.1f", pathLength );
+    }
+}
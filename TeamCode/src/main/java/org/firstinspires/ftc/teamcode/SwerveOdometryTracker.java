@@ -0,0 +1,71 @@
+// ***********************************************************************
+// SwerveOdometryTracker
+// ***********************************************************************
+// Keeps the odometry up to date on its own thread.
+//
+// Odometry adds up small moves, so it works best with short, even time steps. The OpMode loop
+// time jumps around with telemetry and vision, so this task updates the pose at a fixed rate
+// instead. Each update is saved in the pose history, so the loop (or vision) can ask where the
+// robot was at any recent time.
+//
+// The drive does the reading, this only keeps the time.
+
+package org.firstinspires.ftc.teamcode;
+
+// ***********************************************************************
+// SwerveOdometryTracker
+// ***********************************************************************
+// Class definitions
+public class SwerveOdometryTracker {
+
+    // drive to track
+    private final SwerveDrive drive;
+
+    // thread that updates the pose
+    private final SwerveRateRunner runner;
+
+    // ***********************************************************************
+    // SwerveOdometryTracker - set up tracking for the drive
+    // ***********************************************************************
+    // Nothing happens until start() is called.
+    public SwerveOdometryTracker( SwerveDrive useDrive, double rateHz ) {
+        drive = useDrive;
+        runner = new SwerveRateRunner( "SwerveOdometryTracker", rateHz, new Runnable() {
+            @Override
+            public void run() {
+                drive.trackPose();
+            }
+        });
+    }
+
+    // ***********************************************************************
+    // setRate - how often the pose is updated
+    // ***********************************************************************
+    public void setRate( double rateHz ) {
+        runner.setRate( rateHz );
+    }
+
+    public boolean isRunning() {
+        return runner.isRunning();
+    }
+
+    public String getStatsLog() {
+        return "Track updates: " + runner.getStepCount() + "  late: " + runner.getLateCount()
+                + "  failed: " + runner.getFailCount()
+                + "  max " + String.format( "%5.2f", runner.getMaxStepMs() ) + "ms";
+    }
+
+    // ***********************************************************************
+    // start - begin tracking
+    // ***********************************************************************
+    public void start() {
+        runner.start();
+    }
+
+    // ***********************************************************************
+    // stop - end the tracking thread and wait for it
+    // ***********************************************************************
+    public void stop() {
+        runner.stop();
+    }
+}
@@ -0,0 +1,185 @@
+// ***********************************************************************
+// SwerveOutputCache
+// ***********************************************************************
+// Write-through cache for motor power and servo position commands.
+//
+// Every setPower or setPosition is a round trip to the Rev hub, even when the value is the same
+// as last time. Most of our loop code sets the same values over and over (wheel power while
+// cruising, wrist and dump positions while idle). The cached outputs here remember what was last
+// sent and skip the write when the new value is within epsilon of it.
+//
+// A move to exactly zero power is always sent, so a motor is never left humming at a tiny power.
+//
+// The cache counts the writes that were sent and the writes that were skipped.
+
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.Servo;
+
+// ***********************************************************************
+// SwerveOutputCache
+// ***********************************************************************
+// Class definitions
+public class SwerveOutputCache {
+
+    // values closer than this to the last write are not sent again
+    private double epsilon;
+
+    // write counts
+    private long writesIssued;
+    private long writesSuppressed;
+
+    // ***********************************************************************
+    // SwerveOutputCache - create a cache with the given epsilon
+    // ***********************************************************************
+    public SwerveOutputCache( double useEpsilon ) {
+        epsilon = useEpsilon;
+    }
+
+    public void setEpsilon( double newEpsilon ) {
+        epsilon = newEpsilon;
+    }
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    // ***********************************************************************
+    // motor / servo - wrap a device with this cache
+    // ***********************************************************************
+    public CachedMotor motor( DcMotor useMotor ) {
+        return new CachedMotor( this, useMotor );
+    }
+    public CachedServo servo( Servo useServo ) {
+        return new CachedServo( this, useServo );
+    }
+
+    // ***********************************************************************
+    // stats
+    // ***********************************************************************
+    public long getWritesIssued() {
+        return writesIssued;
+    }
+    public long getWritesSuppressed() {
+        return writesSuppressed;
+    }
+    public String getStatsLog() {
+        return "Writes sent: " + writesIssued + "  skipped: " + writesSuppressed;
+    }
+
+    // ***********************************************************************
+    // shouldWrite - is a new value different enough from the last one?
+    // ***********************************************************************
+    // Counts the result either way.
+    synchronized boolean shouldWrite( boolean known, double lastValue, double newValue ) {
+        if ( !known
+                || (( newValue == 0.0 ) && ( lastValue != 0.0 ))
+                || ( Math.abs( newValue - lastValue ) > epsilon )) {
+            writesIssued++;
+            return true;
+        }
+        writesSuppressed++;
+        return false;
+    }
+
+    // ***********************************************************************
+    // CachedMotor
+    // ***********************************************************************
+    // A DcMotor with its power and target position cached.
+    // Reads (encoders, isBusy) go straight to the motor through getMotor().
+    public static class CachedMotor {
+        private final SwerveOutputCache cache;
+        private final DcMotor motor;
+        private boolean powerKnown;
+        private double lastPower;
+        private boolean targetKnown;
+        private int lastTarget;
+
+        CachedMotor( SwerveOutputCache useCache, DcMotor useMotor ) {
+            cache = useCache;
+            motor = useMotor;
+        }
+
+        public DcMotor getMotor() {
+            return motor;
+        }
+
+        public void setPower( double newPower ) {
+            if ( cache.shouldWrite( powerKnown, lastPower, newPower )) {
+                motor.setPower( newPower );
+                lastPower = newPower;
+                powerKnown = true;
+            }
+        }
+
+        public double getPower() {
+            return lastPower;
+        }
+
+        public void setTargetPosition( int newTarget ) {
+            if ( !cache.shouldWrite( targetKnown, lastTarget, newTarget )) {
+                return;
+            }
+            motor.setTargetPosition( newTarget );
+            lastTarget = newTarget;
+            targetKnown = true;
+        }
+
+        // the target we last sent - only asks the motor if nothing has been sent yet
+        public int getTargetPosition() {
+            if ( targetKnown ) {
+                return lastTarget;
+            }
+            return motor.getTargetPosition();
+        }
+
+        // a mode change can reset the motor, so forget what we sent
+        public void setMode( DcMotor.RunMode newMode ) {
+            motor.setMode( newMode );
+            invalidate();
+        }
+
+        // the next write will always be sent
+        public void invalidate() {
+            powerKnown = false;
+            targetKnown = false;
+        }
+    }
+
+    // ***********************************************************************
+    // CachedServo
+    // ***********************************************************************
+    // A Servo with its position cached.
+    public static class CachedServo {
+        private final SwerveOutputCache cache;
+        private final Servo servo;
+        private boolean positionKnown;
+        private double lastPosition;
+
+        CachedServo( SwerveOutputCache useCache, Servo useServo ) {
+            cache = useCache;
+            servo = useServo;
+        }
+
+        public Servo getServo() {
+            return servo;
+        }
+
+        public void setPosition( double newPosition ) {
+            if ( cache.shouldWrite( positionKnown, lastPosition, newPosition )) {
+                servo.setPosition( newPosition );
+                lastPosition = newPosition;
+                positionKnown = true;
+            }
+        }
+
+        public double getPosition() {
+            return lastPosition;
+        }
+
+        // the next write will always be sent
+        public void invalidate() {
+            positionKnown = false;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+// ***********************************************************************
+// SwervePoseFilter
+// ***********************************************************************
+// Blends the wheel odometry with the IMU to get a steadier pose.
+//
+// The wheels are good over the long run, but when the robot speeds up or stops hard they slip
+// and the odometry jumps. The IMU accelerometer knows how the robot is speeding up, but drifts
+// if it is trusted for long. A Kalman filter uses each for what it is good at:
+//      - X and Y each keep a position and a speed. The IMU acceleration (turned onto the field)
+//        moves them forward in time, and the odometry move since the last step is measured as
+//        a speed. When the slip detector flags wheels, that speed is trusted much less, so the
+//        IMU carries the pose through the slip and the slip never gets into the position.
+//      - the position itself is only pulled in by a real reference - the start (reset) or a
+//        known spot on the field (fixPosition).
+//      - the heading keeps an angle and a turn rate. The IMU heading and the IMU turn rate
+//        both pull it in.
+// The three axes are kept separate (2 values each, with a 2x2 covariance), which keeps the math
+// small and means nothing is created on each step.
+//
+// How much each source is trusted is set by its noise (a standard deviation) - bigger noise
+// means less trust. The defaults are a starting point and should be tuned on the robot.
+//
+// Units: cm, cm/s and cm/s/s for X/Y, degrees and degrees/sec for the heading.
+
+package org.firstinspires.ftc.teamcode;
+
+// ***********************************************************************
+// SwervePoseFilter
+// ***********************************************************************
+// Class definitions
+public class SwervePoseFilter {
+
+    static final double DEG2RAD = ( Math.PI / 180 );
+    // IMU acceleration is in m/s/s
+    static final double MS2_TO_CMS2 = 100.0;
+    // longest step we will filter over - after a gap, start again from the odometry
+    static final double MAX_STEP = 0.25;
+
+    // ***********************************************************************
+    // Axis - a value and its rate, with their covariance
+    // ***********************************************************************
+    static class Axis {
+        double value;
+        double rate;
+        // covariance - p00 for the value, p11 for the rate, p01 between them
+        double p00;
+        double p01;
+        double p11;
+        // the value wraps around at +/- 180 (for headings)
+        final boolean angle;
+
+        Axis( boolean isAngle ) {
+            angle = isAngle;
+        }
+
+        void reset( double newValue, double newRate, double valueVar, double rateVar ) {
+            value = newValue;
+            rate = newRate;
+            p00 = valueVar;
+            p01 = 0;
+            p11 = rateVar;
+        }
+
+        // move forward dt seconds with this acceleration, which has this variance
+        void predict( double dt, double accel, double accelVar ) {
+            double dt2 = dt * dt;
+
+            value += ( rate * dt ) + ( 0.5 * accel * dt2 );
+            rate += accel * dt;
+
+            // P = F P F' + Q, with F = [1 dt; 0 1] and Q from the acceleration noise
+            p00 += ( dt * ( 2 * p01 + dt * p11 )) + ( 0.25 * dt2 * dt2 * accelVar );
+            p01 += ( dt * p11 ) + ( 0.5 * dt2 * dt * accelVar );
+            p11 += dt2 * accelVar;
+        }
+
+        // measured value, with this variance
+        void measureValue( double z, double var ) {
+            double error = z - value;
+            double s = p00 + var;
+            double k0 = p00 / s;
+            double k1 = p01 / s;
+
+            if ( angle ) {
+                error = HeadingController.normalize180( error );
+            }
+            value += k0 * error;
+            rate += k1 * error;
+
+            p11 -= k1 * p01;
+            p01 -= k0 * p01;
+            p00 -= k0 * p00;
+        }
+
+        // measured rate, with this variance
+        void measureRate( double z, double var ) {
+            double error = z - rate;
+            double s = p11 + var;
+            double k0 = p01 / s;
+            double k1 = p11 / s;
+
+            value += k0 * error;
+            rate += k1 * error;
+
+            p00 -= k0 * p01;
+            p01 -= k1 * p01;
+            p11 -= k1 * p11;
+        }
+    }
+
+    // the three axes
+    private final Axis axisX;
+    private final Axis axisY;
+    private final Axis axisH;
+
+    // noise (standard deviations)
+    private double accelNoise;          // IMU acceleration, cm/s/s
+    private double odometryNoise;       // odometry speed, cm/s
+    private double slipNoiseScale;      // odometry speed noise times this while wheels slip
+    private double startNoise;          // position at the start, cm
+    private double headingNoise;        // IMU heading, degrees
+    private double turnAccelNoise;      // how fast the turn rate may change, deg/s/s
+    private double yawRateNoise;        // IMU turn rate, deg/s
+
+    // how the IMU axes sit on the robot
+    private boolean swapAccelXY;
+    private double accelSignX;
+    private double accelSignY;
+    private double yawRateSign;
+
+    // time of the last step, 0 to start again
+    private long lastTime;
+    // odometry position at the last step, to work out its speed
+    private double lastOdometryX;
+    private double lastOdometryY;
+    // the filtered pose
+    private final Pose2d pose;
+
+    // ***********************************************************************
+    // SwervePoseFilter - create a filter with the default noise
+    // ***********************************************************************
+    public SwervePoseFilter() {
+        axisX = new Axis( false );
+        axisY = new Axis( false );
+        axisH = new Axis( true );
+        pose = new Pose2d();
+
+        setNoise( 150, 5.0, 10.0, 1.0, 360, 2.0 );
+        startNoise = 0.5;
+        setImuAxes( false, 1, 1, 1 );
+        lastTime = 0;
+    }
+
+    // ***********************************************************************
+    // setNoise - how much to trust each source (standard deviations)
+    // ***********************************************************************
+    public synchronized void setNoise( double newAccelNoise, double newOdometryNoise,
+                                       double newSlipNoiseScale, double newHeadingNoise,
+                                       double newTurnAccelNoise, double newYawRateNoise ) {
+        accelNoise = newAccelNoise;
+        odometryNoise = newOdometryNoise;
+        slipNoiseScale = newSlipNoiseScale;
+        headingNoise = newHeadingNoise;
+        turnAccelNoise = newTurnAccelNoise;
+        yawRateNoise = newYawRateNoise;
+    }
+
+    // ***********************************************************************
+    // setImuAxes - line the IMU axes up with the robot (X right, Y forward)
+    // ***********************************************************************
+    // yawSign turns the IMU turn rate into the heading direction (heading is clockwise positive).
+    public synchronized void setImuAxes( boolean swapXY, double signX, double signY, double yawSign ) {
+        swapAccelXY = swapXY;
+        accelSignX = signX;
+        accelSignY = signY;
+        yawRateSign = yawSign;
+    }
+
+    // ***********************************************************************
+    // reset - start again from the next update
+    // ***********************************************************************
+    public synchronized void reset() {
+        lastTime = 0;
+    }
+
+    // ***********************************************************************
+    // fixPosition - the robot is known to be here (cm), within this noise
+    // ***********************************************************************
+    // For real references only, like squaring up on a field wall - not the odometry.
+    public synchronized void fixPosition( double x, double y, double noise ) {
+        if ( lastTime == 0 ) {
+            return;
+        }
+        axisX.measureValue( x, noise * noise );
+        axisY.measureValue( y, noise * noise );
+        copyPose();
+    }
+
+    // ***********************************************************************
+    // update - one filter step
+    // ***********************************************************************
+    // odometry is the odometry pose now, and slipping is true if any wheel is flagged as slipping.
+    // With useImu, accelX/Y (m/s/s, IMU axes) and yawRate (deg/s, IMU direction) are blended in
+    // as well.
+    public synchronized void update( long timeNanos, Pose2d odometry, boolean slipping, boolean useImu,
+                                     double accelX, double accelY, double yawRate ) {
+        double dt;
+        double robotX;
+        double robotY;
+        double fieldX;
+        double fieldY;
+        double sinH;
+        double cosH;
+        double accelVar;
+        double speedVar;
+
+        dt = ( timeNanos - lastTime ) / 1e9;
+        if (( lastTime == 0 ) || ( dt <= 0 ) || ( dt > MAX_STEP )) {
+            // start (again) right on the odometry - the one time its position is used
+            axisX.reset( odometry.x, 0, startNoise * startNoise, 0 );
+            axisY.reset( odometry.y, 0, startNoise * startNoise, 0 );
+            axisH.reset( odometry.heading, 0, headingNoise * headingNoise, 0 );
+            lastOdometryX = odometry.x;
+            lastOdometryY = odometry.y;
+            lastTime = timeNanos;
+            copyPose();
+            return;
+        }
+        lastTime = timeNanos;
+
+        // acceleration onto the robot, then onto the field
+        if ( useImu ) {
+            robotX = ( swapAccelXY ? accelY : accelX ) * accelSignX * MS2_TO_CMS2;
+            robotY = ( swapAccelXY ? accelX : accelY ) * accelSignY * MS2_TO_CMS2;
+            accelVar = accelNoise * accelNoise;
+        } else {
+            // no IMU - assume steady speed, and trust that much less
+            robotX = 0;
+            robotY = 0;
+            accelVar = 4 * accelNoise * accelNoise;
+        }
+        sinH = FastMath.sin( axisH.value * DEG2RAD );
+        cosH = FastMath.cos( axisH.value * DEG2RAD );
+        fieldX = ( robotX * cosH ) + ( robotY * sinH );
+        fieldY = ( robotY * cosH ) - ( robotX * sinH );
+
+        // predict
+        axisX.predict( dt, fieldX, accelVar );
+        axisY.predict( dt, fieldY, accelVar );
+        axisH.predict( dt, 0, turnAccelNoise * turnAccelNoise );
+
+        // and correct - the odometry move is a speed, trusted less while wheels slip
+        speedVar = odometryNoise * odometryNoise;
+        if ( slipping ) {
+            speedVar *= slipNoiseScale * slipNoiseScale;
+        }
+        axisX.measureRate(( odometry.x - lastOdometryX ) / dt, speedVar );
+        axisY.measureRate(( odometry.y - lastOdometryY ) / dt, speedVar );
+        lastOdometryX = odometry.x;
+        lastOdometryY = odometry.y;
+        axisH.measureValue( odometry.heading, headingNoise * headingNoise );
+        if ( useImu ) {
+            axisH.measureRate( yawRate * yawRateSign, yawRateNoise * yawRateNoise );
+        }
+
+        copyPose();
+    }
+
+    private void copyPose() {
+        pose.set( axisX.value, axisY.value, axisH.value );
+    }
+
+    // ***********************************************************************
+    // results
+    // ***********************************************************************
+    public synchronized void getPose( Pose2d out ) {
+        out.set( pose );
+    }
+    // field speed, cm/s
+    public synchronized double getSpeedX() {
+        return axisX.rate;
+    }
+    public synchronized double getSpeedY() {
+        return axisY.rate;
+    }
+    // turn rate, deg/s
+    public synchronized double getTurnRate() {
+        return axisH.rate;
+    }
+
+    public synchronized String getLog() {
+        return "Filter: " + pose + String.format( "  V %6.1f, %6.1f  W %6.1f",
+                axisX.rate, axisY.rate, axisH.rate );
+    }
+}
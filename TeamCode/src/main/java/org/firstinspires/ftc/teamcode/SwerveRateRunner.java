@@ -0,0 +1,214 @@
+// ***********************************************************************
+// SwerveRateRunner
+// ***********************************************************************
+// Runs a task over and over on its own thread, at a fixed rate.
+//
+// The drive threads (IMU sampling, wheel management, odometry tracking) all work the same way:
+// do a step, then sleep until the next step is due. The next step is timed from when the last
+// one was due, not from when it ended, so the rate does not drift. If a step runs late, the
+// count goes up and the timing starts over from now rather than rushing to catch up.
+//
+// Each thread only runs while it is the runner's current thread. stop() clears that before it
+// waits for the thread, so a thread that is slow to stop can never be brought back by a start()
+// - the new thread is a new one, and the old one ends after its step.
+//
+// A step that throws is logged and counted, and the next step runs as usual - one bad hub read
+// must not stop the pose or the wheels for the rest of the match. If the thread ever does end on
+// its own, it clears itself so isRunning() tells the truth.
+
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.util.RobotLog;
+
+// ***********************************************************************
+// SwerveRateRunner
+// ***********************************************************************
+// Class definitions
+public class SwerveRateRunner implements Runnable {
+
+    // how long stop() waits for the thread
+    static final long STOP_WAIT_MS = 500;
+
+    private final String name;
+    private final Runnable task;
+
+    // time between steps
+    private volatile long periodNanos;
+
+    // the thread that may run - any other thread running run() ends
+    private volatile Thread runThread;
+
+    // stats
+    private volatile long stepCount;
+    private volatile long lateCount;
+    private volatile long failCount;
+    private volatile long lastStepNanos;
+    private volatile long maxStepNanos;
+    private volatile long firstStartNanos;
+    private volatile long lastStartNanos;
+    private volatile long lastPeriodNanos;
+    private volatile long periodCount;
+
+    // ***********************************************************************
+    // SwerveRateRunner - run this task, rateHz times a second
+    // ***********************************************************************
+    // Nothing happens until start() is called.
+    public SwerveRateRunner( String useName, double rateHz, Runnable useTask ) {
+        name = useName;
+        task = useTask;
+        setRate( rateHz );
+    }
+
+    // ***********************************************************************
+    // setRate - how often the task runs
+    // ***********************************************************************
+    public void setRate( double rateHz ) {
+        if ( rateHz <= 0 ) {
+            rateHz = 1;
+        }
+        periodNanos = (long)( 1e9 / rateHz );
+    }
+
+    public boolean isRunning() {
+        return runThread != null;
+    }
+
+    // ***********************************************************************
+    // start - begin running the task
+    // ***********************************************************************
+    public synchronized void start() {
+        Thread newThread;
+
+        if ( runThread != null ) {
+            return;
+        }
+        newThread = new Thread( this, name );
+        newThread.setDaemon( true );
+        firstStartNanos = 0;
+        lastStartNanos = 0;
+        periodCount = 0;
+        runThread = newThread;
+        newThread.start();
+    }
+
+    // ***********************************************************************
+    // stop - end the thread and wait for it
+    // ***********************************************************************
+    // The wait is outside the lock, so a thread that is ending can still clear itself.
+    public void stop() {
+        Thread oldThread;
+
+        // from here on the old thread can only finish
+        synchronized ( this ) {
+            oldThread = runThread;
+            runThread = null;
+        }
+        if ( oldThread == null ) {
+            return;
+        }
+        oldThread.interrupt();
+        try {
+            oldThread.join( STOP_WAIT_MS );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ***********************************************************************
+    // run - the thread
+    // ***********************************************************************
+    @Override
+    public void run() {
+        Thread self = Thread.currentThread();
+        long nextTime;
+        long startTime;
+        long took;
+        long waitNanos;
+
+        try {
+            nextTime = System.nanoTime();
+            while (( runThread == self ) && !self.isInterrupted() ) {
+                startTime = System.nanoTime();
+                if ( lastStartNanos != 0 ) {
+                    lastPeriodNanos = startTime - lastStartNanos;
+                    periodCount++;
+                } else {
+                    firstStartNanos = startTime;
+                }
+                lastStartNanos = startTime;
+
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    // skip this step, the next one may work
+                    failCount++;
+                    RobotLog.e( name + ": step failed " + e );
+                }
+
+                took = System.nanoTime() - startTime;
+                lastStepNanos = took;
+                if ( took > maxStepNanos ) {
+                    maxStepNanos = took;
+                }
+                stepCount++;
+
+                // wait for the next step, without drifting
+                nextTime += periodNanos;
+                waitNanos = nextTime - System.nanoTime();
+                if ( waitNanos < 0 ) {
+                    // we fell behind, so start counting from now
+                    lateCount++;
+                    nextTime = System.nanoTime();
+                    continue;
+                }
+                try {
+                    Thread.sleep( waitNanos / 1000000, (int)( waitNanos % 1000000 ));
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        } finally {
+            // ended on our own - let isRunning() and start() know
+            synchronized ( this ) {
+                if ( runThread == self ) {
+                    runThread = null;
+                }
+            }
+        }
+    }
+
+    // ***********************************************************************
+    // stats for reporting
+    // ***********************************************************************
+    public long getStepCount() {
+        return stepCount;
+    }
+    public long getLateCount() {
+        return lateCount;
+    }
+    public long getFailCount() {
+        return failCount;
+    }
+    public double getLastStepMs() {
+        return lastStepNanos / 1e6;
+    }
+    public double getMaxStepMs() {
+        return maxStepNanos / 1e6;
+    }
+    // time between the starts of the last two steps - the real period
+    public double getPeriodMs() {
+        return lastPeriodNanos / 1e6;
+    }
+    // average time between step starts since start()
+    public double getAveragePeriodMs() {
+        long count = periodCount;
+
+        if ( count == 0 ) {
+            return 0;
+        }
+        return (( lastStartNanos - firstStartNanos ) / count ) / 1e6;
+    }
+    public double getTargetPeriodMs() {
+        return periodNanos / 1e6;
+    }
+}
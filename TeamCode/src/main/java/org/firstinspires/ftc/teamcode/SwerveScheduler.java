@@ -0,0 +1,147 @@
+// ***********************************************************************
+// SwerveScheduler
+// ***********************************************************************
+// Runs the SwerveCommands that are going, a step each per loop.
+//
+// Call run() once per loop, from the loop thread. Each running command gets one execute, and
+// is ended and dropped once it is finished. Commands scheduled while run() is going start right
+// away, and get their first execute on the next loop.
+
+package org.firstinspires.ftc.teamcode;
+
+// ***********************************************************************
+// SwerveScheduler
+// ***********************************************************************
+// Class definitions
+public class SwerveScheduler {
+
+    // commands that are going
+    private SwerveCommand[] commands;
+    private int commandCount;
+
+    // ***********************************************************************
+    // SwerveScheduler - create an empty scheduler
+    // ***********************************************************************
+    public SwerveScheduler() {
+        commands = new SwerveCommand[ 8 ];
+        commandCount = 0;
+    }
+
+    // ***********************************************************************
+    // schedule - start a command, it runs until it is finished or cancelled
+    // ***********************************************************************
+    // A command that is already running is left alone.
+    public SwerveCommand schedule( SwerveCommand command ) {
+        SwerveCommand[] bigger;
+
+        if ( isScheduled( command )) {
+            return command;
+        }
+        if ( commandCount == commands.length ) {
+            bigger = new SwerveCommand[ commands.length * 2 ];
+            System.arraycopy( commands, 0, bigger, 0, commandCount );
+            commands = bigger;
+        }
+        commands[ commandCount++ ] = command;
+        command.initialize();
+
+        return command;
+    }
+
+    // ***********************************************************************
+    // run - one step of every running command
+    // ***********************************************************************
+    public void run() {
+        int count = commandCount;
+        int c;
+
+        for ( c = 0; c < count; c++ ) {
+            if ( commands[ c ] == null ) {
+                continue;
+            }
+            commands[ c ].execute();
+            if (( commands[ c ] != null ) && commands[ c ].isFinished() ) {
+                commands[ c ].end( false );
+                commands[ c ] = null;
+            }
+        }
+        removeDone();
+    }
+
+    // ***********************************************************************
+    // cancel - stop a command before it is finished
+    // ***********************************************************************
+    // Safe to call from inside a running command - the list is packed down in the next run().
+    public void cancel( SwerveCommand command ) {
+        int c;
+
+        for ( c = 0; c < commandCount; c++ ) {
+            if ( commands[ c ] == command ) {
+                commands[ c ] = null;
+                command.end( true );
+            }
+        }
+    }
+
+    public void cancelAll() {
+        SwerveCommand command;
+        int c;
+
+        for ( c = 0; c < commandCount; c++ ) {
+            command = commands[ c ];
+            commands[ c ] = null;
+            if ( command != null ) {
+                command.end( true );
+            }
+        }
+        commandCount = 0;
+    }
+
+    public boolean isScheduled( SwerveCommand command ) {
+        int c;
+
+        for ( c = 0; c < commandCount; c++ ) {
+            if ( commands[ c ] == command ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getCount() {
+        return commandCount;
+    }
+
+    public String getLog() {
+        StringBuilder report = new StringBuilder( "Commands:" );
+        int c;
+
+        if ( commandCount == 0 ) {
+            return "Commands: (none)";
+        }
+        for ( c = 0; c < commandCount; c++ ) {
+            if ( commands[ c ] != null ) {
+                report.append( ' ' ).append( commands[ c ].getName() );
+            }
+        }
+        return report.toString();
+    }
+
+    // ***********************************************************************
+    // removeDone - pack the list down to the commands still running
+    // ***********************************************************************
+    private void removeDone() {
+        int keep = 0;
+        int c;
+
+        for ( c = 0; c < commandCount; c++ ) {
+            if ( commands[ c ] != null ) {
+                commands[ keep++ ] = commands[ c ];
+            }
+        }
+        for ( c = keep; c < commandCount; c++ ) {
+            commands[ c ] = null;
+        }
+        commandCount = keep;
+    }
+}
@@ -0,0 +1,164 @@
+// ***********************************************************************
+// SwerveSensorScheduler
+// ***********************************************************************
+// Keeps sensor reads on a schedule.
+//
+// Each sensor says how often it needs to be read. Until that time comes around again, anyone
+// asking gets the value from the last read. This keeps the number of bus reads per loop down and
+// makes the loop time more even, since slow sensors are not read on every pass.
+//
+// To add a sensor, extend Sensor and fill in the values in read(), for example:
+//
+//      heightSensor = new SwerveSensorScheduler.Sensor("height", 100, 1) {
+//          @Override
+//          protected void read() {
+//              values[0] = heightL.getDistance(DistanceUnit.CM);
+//          }
+//      };
+//      sensors.add(heightSensor);
+
+package org.firstinspires.ftc.teamcode;
+
+// ***********************************************************************
+// SwerveSensorScheduler
+// ***********************************************************************
+// Class definitions
+public class SwerveSensorScheduler {
+
+    // ***********************************************************************
+    // Sensor - one scheduled sensor and its cached values
+    // ***********************************************************************
+    public static abstract class Sensor {
+        private final String name;
+        // time between reads
+        private long periodNanos;
+        // when the next read is due (System.nanoTime)
+        private long nextDueNanos;
+        private boolean everRead;
+        private long readCount;
+        // the values from the last read
+        protected final double[] values;
+
+        protected Sensor( String useName, double periodMs, int valueCount ) {
+            name = useName;
+            values = new double[ valueCount ];
+            setPeriod( periodMs );
+        }
+
+        // read the hardware and fill in values[]
+        protected abstract void read();
+
+        public String getName() {
+            return name;
+        }
+
+        public void setPeriod( double periodMs ) {
+            periodNanos = (long)( periodMs * 1e6 );
+        }
+
+        public double getPeriodMs() {
+            return periodNanos / 1e6;
+        }
+
+        public long getReadCount() {
+            return readCount;
+        }
+
+        // read only if the next read is due
+        public void update() {
+            long now = System.nanoTime();
+            if ( !everRead || ( now - nextDueNanos >= 0 )) {
+                readAt( now );
+            }
+        }
+
+        // read now, whether due or not
+        public void refresh() {
+            readAt( System.nanoTime() );
+        }
+
+        // make the next update() read the sensor
+        public void invalidate() {
+            everRead = false;
+        }
+
+        // cached values - update() first if a current value is needed
+        public double getValue() {
+            return values[ 0 ];
+        }
+        public double getValue( int index ) {
+            return values[ index ];
+        }
+
+        private void readAt( long now ) {
+            read();
+            readCount++;
+            everRead = true;
+            nextDueNanos = now + periodNanos;
+        }
+    }
+
+    // sensors on the schedule
+    private Sensor[] sensors;
+    private int sensorCount;
+
+    // ***********************************************************************
+    // SwerveSensorScheduler - create an empty schedule
+    // ***********************************************************************
+    public SwerveSensorScheduler() {
+        sensors = new Sensor[ 8 ];
+        sensorCount = 0;
+    }
+
+    // ***********************************************************************
+    // add - put a sensor on the schedule
+    // ***********************************************************************
+    public Sensor add( Sensor newSensor ) {
+        Sensor[] bigger;
+
+        if ( sensorCount == sensors.length ) {
+            bigger = new Sensor[ sensors.length * 2 ];
+            System.arraycopy( sensors, 0, bigger, 0, sensorCount );
+            sensors = bigger;
+        }
+        sensors[ sensorCount++ ] = newSensor;
+
+        return newSensor;
+    }
+
+    // ***********************************************************************
+    // poll - read every sensor that is due
+    // ***********************************************************************
+    public void poll() {
+        int s;
+
+        for ( s = 0; s < sensorCount; s++ ) {
+            sensors[ s ].update();
+        }
+    }
+
+    // ***********************************************************************
+    // invalidateAll - have every sensor read on the next poll
+    // ***********************************************************************
+    public void invalidateAll() {
+        int s;
+
+        for ( s = 0; s < sensorCount; s++ ) {
+            sensors[ s ].invalidate();
+        }
+    }
+
+    // ***********************************************************************
+    // getReadLog - how many reads each sensor has done
+    // ***********************************************************************
+    public String getReadLog() {
+        StringBuilder report = new StringBuilder( "Reads:" );
+        int s;
+
+        for ( s = 0; s < sensorCount; s++ ) {
+            report.append( ' ' ).append( sensors[ s ].getName() )
+                    .append( '=' ).append( sensors[ s ].getReadCount() );
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,216 @@
+// ***********************************************************************
+// SwerveSlipDetector
+// ***********************************************************************
+// Spots a wheel that is slipping (or stuck) by checking it against the other three.
+//
+// Once the turning is taken out, every wheel on a rigid robot moves the same way. The odometry
+// hands over each wheel's move for the update (turning already taken out with the IMU heading).
+// Each wheel is checked against the average move of the other wheels:
+//      - the difference must be more than a small fixed amount plus a share of the robot move,
+//        so encoder noise and slow moves do not trip it
+//      - it has to be over for a few updates in a row to count as slipping, and under for a
+//        few more to clear, so one bad read does not flip it back and forth
+// A slipping wheel gets a small weight in the odometry average until it clears.
+//
+// Wheels already slipping are left out of the others' average, as long as two good wheels are
+// left to compare against.
+
+package org.firstinspires.ftc.teamcode;
+
+// ***********************************************************************
+// SwerveSlipDetector
+// ***********************************************************************
+// Class definitions
+public class SwerveSlipDetector {
+
+    // number of wheels on the drive
+    static final int WHEEL_COUNT = SwerveKinematics.WHEEL_COUNT;
+
+    // slip when the difference is over minResidual (cm per update) + residualRatio of the move
+    private double minResidual;
+    private double residualRatio;
+    // updates in a row to start and to end a slip
+    private int flagCount;
+    private int clearCount;
+    // odometry weight for a slipping wheel
+    private double slipWeight;
+
+    // per wheel state
+    private final double[] residual;
+    private final int[] overCount;
+    private final int[] underCount;
+    private final boolean[] slipping;
+    private final long[] slipEvents;
+    // scratch for check() - the new flags, and how far each wheel is over its limit
+    private final boolean[] nextSlipping;
+    private final double[] overBy;
+
+    // ***********************************************************************
+    // SwerveSlipDetector - create a detector with the given limits
+    // ***********************************************************************
+    public SwerveSlipDetector( double useMinResidual, double useResidualRatio,
+                               int useFlagCount, int useClearCount, double useSlipWeight ) {
+        residual = new double[ WHEEL_COUNT ];
+        overCount = new int[ WHEEL_COUNT ];
+        underCount = new int[ WHEEL_COUNT ];
+        slipping = new boolean[ WHEEL_COUNT ];
+        slipEvents = new long[ WHEEL_COUNT ];
+        nextSlipping = new boolean[ WHEEL_COUNT ];
+        overBy = new double[ WHEEL_COUNT ];
+
+        setLimits( useMinResidual, useResidualRatio, useFlagCount, useClearCount, useSlipWeight );
+    }
+
+    public synchronized void setLimits( double newMinResidual, double newResidualRatio,
+                                        int newFlagCount, int newClearCount, double newSlipWeight ) {
+        minResidual = newMinResidual;
+        residualRatio = newResidualRatio;
+        flagCount = newFlagCount;
+        clearCount = newClearCount;
+        slipWeight = newSlipWeight;
+    }
+
+    // ***********************************************************************
+    // reset - all wheels good again
+    // ***********************************************************************
+    public synchronized void reset() {
+        int w;
+
+        for ( w = 0; w < WHEEL_COUNT; w++ ) {
+            residual[ w ] = 0;
+            overCount[ w ] = 0;
+            underCount[ w ] = 0;
+            slipping[ w ] = false;
+        }
+    }
+
+    // ***********************************************************************
+    // check - check this update's wheel moves and fill in the weight scale for each wheel
+    // ***********************************************************************
+    // dx/dy are each wheel's move (cm, robot frame) with the turning taken out.
+    // Every wheel is checked against the flags from before this update, and the new flags are
+    // only applied once all four are done. If more wheels would flag than leave two good ones,
+    // the wheels furthest over their limit flag first and the rest wait for the next update.
+    public synchronized void check( double[] dx, double[] dy, double[] scale ) {
+        double sumX;
+        double sumY;
+        double expectX;
+        double expectY;
+        double limit;
+        int goodCount;
+        int others;
+        int least;
+        int w;
+        int o;
+
+        goodCount = 0;
+        for ( w = 0; w < WHEEL_COUNT; w++ ) {
+            if ( !slipping[ w ] ) {
+                goodCount++;
+            }
+        }
+
+        for ( w = 0; w < WHEEL_COUNT; w++ ) {
+            nextSlipping[ w ] = slipping[ w ];
+
+            // what the other wheels say the robot did
+            sumX = 0;
+            sumY = 0;
+            others = 0;
+            for ( o = 0; o < WHEEL_COUNT; o++ ) {
+                if ( o == w ) {
+                    continue;
+                }
+                // leave out slipping wheels, if enough good ones are left
+                if ( slipping[ o ] && ( goodCount - ( slipping[ w ] ? 0 : 1 ) >= 2 )) {
+                    continue;
+                }
+                sumX += dx[ o ];
+                sumY += dy[ o ];
+                others++;
+            }
+            if ( others == 0 ) {
+                // nothing to compare against - leave this wheel as it was
+                residual[ w ] = 0;
+                continue;
+            }
+            expectX = sumX / others;
+            expectY = sumY / others;
+
+            residual[ w ] = FastMath.sqrt( FastMath.pow2( dx[ w ] - expectX ) + FastMath.pow2( dy[ w ] - expectY ));
+            limit = minResidual
+                    + ( residualRatio * FastMath.sqrt( FastMath.pow2( expectX ) + FastMath.pow2( expectY )));
+            overBy[ w ] = residual[ w ] - limit;
+
+            // count up toward a change
+            if ( residual[ w ] > limit ) {
+                overCount[ w ]++;
+                underCount[ w ] = 0;
+            } else {
+                underCount[ w ]++;
+                overCount[ w ] = 0;
+            }
+            if ( !slipping[ w ] && ( overCount[ w ] >= flagCount )) {
+                nextSlipping[ w ] = true;
+            } else if ( slipping[ w ] && ( underCount[ w ] >= clearCount )) {
+                nextSlipping[ w ] = false;
+            }
+        }
+
+        // keep two good wheels - drop the new flags that are least over their limit
+        goodCount = 0;
+        for ( w = 0; w < WHEEL_COUNT; w++ ) {
+            if ( !nextSlipping[ w ] ) {
+                goodCount++;
+            }
+        }
+        while ( goodCount < 2 ) {
+            least = -1;
+            for ( w = 0; w < WHEEL_COUNT; w++ ) {
+                if ( nextSlipping[ w ] && !slipping[ w ]
+                        && (( least < 0 ) || ( overBy[ w ] < overBy[ least ] ))) {
+                    least = w;
+                }
+            }
+            if ( least < 0 ) {
+                break;
+            }
+            nextSlipping[ least ] = false;
+            goodCount++;
+        }
+
+        // apply the new flags
+        for ( w = 0; w < WHEEL_COUNT; w++ ) {
+            if ( nextSlipping[ w ] && !slipping[ w ] ) {
+                slipEvents[ w ]++;
+            }
+            slipping[ w ] = nextSlipping[ w ];
+            scale[ w ] = slipping[ w ] ? slipWeight : 1.0;
+        }
+    }
+
+    // ***********************************************************************
+    // results
+    // ***********************************************************************
+    public synchronized boolean isSlipping( int wheel ) {
+        return slipping[ wheel ];
+    }
+    public synchronized double getResidual( int wheel ) {
+        return residual[ wheel ];
+    }
+    public synchronized long getSlipEvents( int wheel ) {
+        return slipEvents[ wheel ];
+    }
+
+    public synchronized String getLog() {
+        StringBuilder report = new StringBuilder( "Slip:" );
+        int w;
+
+        for ( w = 0; w < WHEEL_COUNT; w++ ) {
+            report.append( ' ' ).append( w ).append( slipping[ w ] ? "*" : "-" )
+                    .append( String.format( "%4.1f", residual[ w ] ))
+                    .append( '(' ).append( slipEvents[ w ] ).append( ')' );
+        }
+        return report.toString();
+    }
+}
@@ -6,7 +6,6 @@
 package org.firstinspires.ftc.teamcode;
 import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
 import com.qualcomm.robotcore.hardware.DcMotor;
-import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
 // ***********************************************************************
 // Definitions from Qualcomm code for OpMode recognition
 // ***********************************************************************
@@ -50,8 +49,10 @@ public class SwerveTeleOp extends SwerveCore {
         swerveDebug(500, "SwerveTeleOp::start", "START");
         // Call the super/base class start method.
         super.start();
-        dump.setPosition(1);
+        dumpOut.setPosition(1);
         ourSwerve.curSwerveMode = SwerveDrive.swerveModes.SWERVE_DRIVER;
+        // ramp the wheels rather than slamming them to each new stick position
+        ourSwerve.setUseGradual(true);
 
         swerveDebug(500, "SwerveTeleOp::start", "DONE");
     }
@@ -69,6 +70,9 @@ public class SwerveTeleOp extends SwerveCore {
 
         swerveDebug(2000, "SwerveTeleOp::loop", "START");
 
+        // one encoder snapshot for this pass
+        readEncoders();
+
         // set swerve drive orientation automation level based on driver request
         if (gamepad1.b) {
             ourSwerve.setSwerveMode(SwerveDrive.swerveModes.SWERVE_AUTO);
@@ -103,7 +107,8 @@ public class SwerveTeleOp extends SwerveCore {
         fingers();
 //        clear();
 
-        ourSwerve.distance(heightL.getDistance(DistanceUnit.CM));
+        heightSensor.update();
+        ourSwerve.distance(heightSensor.getValue());
 
 
         // Any loop background updates happen now....
@@ -132,9 +137,9 @@ public class SwerveTeleOp extends SwerveCore {
     // makes it easier to go directly sideways
     private void dump() {
         if (gamepad2.y) {
-            dump.setPosition(-1);
+            dumpOut.setPosition(-1);
         } else {
-            dump.setPosition(.9);
+            dumpOut.setPosition(.9);
         }
     }
 
@@ -154,11 +159,11 @@ public class SwerveTeleOp extends SwerveCore {
 
     private void climb() {
         if (gamepad1.dpad_down) {
-            climber.setPower(-.7);
+            climberOut.setPower(-.7);
         } else if (gamepad1.dpad_up) {
-            climber.setPower(.7);
+            climberOut.setPower(.7);
         } else {
-            climber.setPower(0);
+            climberOut.setPower(0);
         }
     }
 
@@ -189,29 +194,29 @@ public class SwerveTeleOp extends SwerveCore {
 //                vSlide.setPower(0);
 //            }
 //        } else if (!clearing) {
-            vSlide.setPower(-gamepad2.right_stick_y);
+            vSlideOut.setPower(-gamepad2.right_stick_y);
         }
 
 
     private void hSlide() {
-        hSlide.setPower(-gamepad2.left_stick_y);
+        hSlideOut.setPower(-gamepad2.left_stick_y);
     }
 
     private void intake() {
 
         if (gamepad2.right_trigger > .2) {
-            wristR.setPosition(.87);
-            wristL.setPosition(.87);
-            intake.setPower(posorneg);
+            wristROut.setPosition(.87);
+            wristLOut.setPosition(.87);
+            intakeOut.setPower(posorneg);
 
         } else if (gamepad2.left_trigger > .2) {
-            wristL.setPosition(0);
-            wristR.setPosition(0);
-            intake.setPower(posorneg);
+            wristLOut.setPosition(0);
+            wristROut.setPosition(0);
+            intakeOut.setPower(posorneg);
         } else {
-            wristL.setPosition(.25);
-            wristR.setPosition(.25);
-            intake.setPower(0);
+            wristLOut.setPosition(.25);
+            wristROut.setPosition(.25);
+            intakeOut.setPower(0);
         }
     }
 
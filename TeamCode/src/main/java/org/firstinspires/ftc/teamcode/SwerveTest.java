@@ -33,6 +33,10 @@ public class SwerveTest extends SwerveCore {
     private String  testName;
     private String  testValue;
 
+    // Give the driver time to change between picks
+    private SwerveTimer.Deadline changeDelay = new SwerveTimer.Deadline();
+    private static final double CHANGE_DELAY_MS = 250;
+
 
     // ***********************************************************************
     // SwerveTest
@@ -101,37 +105,40 @@ public class SwerveTest extends SwerveCore {
         double      nextValue;              // Next value to target
         int         newItem;                // Nest item to test
 
-        // Give the driver time to change
-        swerveSleep( 250 );
-
         // Check buttons to see which component to test next
+        // -- only after the driver has had time to let go from the last change
+        if ( changeDelay.expired() ) {
+            // Press A to test wheels
+            if ( gamepad1.a && (testGroup != TEST_G_MOTORS)) {
+                changeTest( TEST_G_MOTORS, 0);
+                changeDelay.start( CHANGE_DELAY_MS );
+            }
 
-        // Press A to test wheels
-        if ( gamepad1.a && (testGroup != TEST_G_MOTORS)) {
-            changeTest( TEST_G_MOTORS, 0);
-        }
-
-        // Press B to test arm components
-        if ( gamepad1.b && (testGroup != TEST_G_SERVOS)) {
-            changeTest( TEST_G_SERVOS, 0);
-        }
-
-        // Use the right stick x values to pick a new target
-        if (gamepad1.right_stick_x > minJoystickMove) {
-            newItem = testItem + 1;
-            if ( newItem > maxItems) {
-                newItem = 0;
+            // Press B to test arm components
+            if ( gamepad1.b && (testGroup != TEST_G_SERVOS)) {
+                changeTest( TEST_G_SERVOS, 0);
+                changeDelay.start( CHANGE_DELAY_MS );
             }
-            // Start the new test
-            changeTest( testGroup, newItem );
 
-        } else if (gamepad1.right_stick_x < -minJoystickMove) {
-            newItem = testItem - 1;
-            if ( newItem < 0 ) {
-                newItem = maxItems;
+            // Use the right stick x values to pick a new target
+            if (gamepad1.right_stick_x > minJoystickMove) {
+                newItem = testItem + 1;
+                if ( newItem > maxItems) {
+                    newItem = 0;
+                }
+                // Start the new test
+                changeTest( testGroup, newItem );
+                changeDelay.start( CHANGE_DELAY_MS );
+
+            } else if (gamepad1.right_stick_x < -minJoystickMove) {
+                newItem = testItem - 1;
+                if ( newItem < 0 ) {
+                    newItem = maxItems;
+                }
+                // Start the new test
+                changeTest( testGroup, newItem );
+                changeDelay.start( CHANGE_DELAY_MS );
             }
-            // Start the new test
-            changeTest( testGroup, newItem );
         }
 
         // Now check for movement for the component
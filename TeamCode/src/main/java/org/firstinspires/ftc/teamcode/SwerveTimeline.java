@@ -0,0 +1,234 @@
+// ***********************************************************************
+// SwerveTimeline
+// ***********************************************************************
+// Where the autonomous time goes, state by state.
+//
+// The OpMode tells the timeline when a state is set, each loop pass (and whether that pass was
+// waiting or working), and how each wait ended. For every state it keeps:
+//      - when it was first set (seconds from the start) and how many times
+//      - time spent working (passes where the state ran) and loop passes
+//      - time spent waiting before it could run, split by how the wait ended:
+//          fixed   - a plain delay ran out
+//          met     - the condition came true (real work, like a drive finishing)
+//          timeout - the condition never came true and the delay ran out
+// Fixed and timeout waits are the slack - time we may be able to cut.
+//
+// States are numbered (the enum ordinal), so each record is a few array entries and a loop
+// pass costs nothing much. At the end, write() saves a small CSV for the run, and getSummary()
+// gives the lines for the log.
+
+package org.firstinspires.ftc.teamcode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+// ***********************************************************************
+// SwerveTimeline
+// ***********************************************************************
+// Class definitions
+public class SwerveTimeline {
+
+    // how a wait ended
+    static final int WAIT_FIXED = 0;
+    static final int WAIT_MET = 1;
+    static final int WAIT_TIMEOUT = 2;
+
+    private final String[] names;
+
+    // per state
+    private final long[] firstSet;
+    private final int[] visits;
+    private final long[] loops;
+    private final long[] workNanos;
+    private final long[] fixedNanos;
+    private final long[] metNanos;
+    private final long[] timeoutNanos;
+    private final double[] plannedMs;
+    private final int[] timeouts;
+
+    // run timing
+    private long startTime;
+    private long lastMark;
+    // wait time so far for the state being waited on
+    private long pendingWait;
+    private boolean waitOpen;
+
+    // ***********************************************************************
+    // SwerveTimeline - one record per state name
+    // ***********************************************************************
+    public SwerveTimeline( String[] stateNames ) {
+        int count = stateNames.length;
+
+        names = stateNames;
+        firstSet = new long[ count ];
+        visits = new int[ count ];
+        loops = new long[ count ];
+        workNanos = new long[ count ];
+        fixedNanos = new long[ count ];
+        metNanos = new long[ count ];
+        timeoutNanos = new long[ count ];
+        plannedMs = new double[ count ];
+        timeouts = new int[ count ];
+        start();
+    }
+
+    // ***********************************************************************
+    // start - clear everything, the run starts now
+    // ***********************************************************************
+    public void start() {
+        int s;
+
+        for ( s = 0; s < names.length; s++ ) {
+            firstSet[ s ] = -1;
+            visits[ s ] = 0;
+            loops[ s ] = 0;
+            workNanos[ s ] = 0;
+            fixedNanos[ s ] = 0;
+            metNanos[ s ] = 0;
+            timeoutNanos[ s ] = 0;
+            plannedMs[ s ] = 0;
+            timeouts[ s ] = 0;
+        }
+        startTime = System.nanoTime();
+        lastMark = startTime;
+        pendingWait = 0;
+        waitOpen = false;
+    }
+
+    // ***********************************************************************
+    // stateSet - a state was set, with this delay (or timeout) before it runs
+    // ***********************************************************************
+    public void stateSet( int state, double delayMs ) {
+        if ( firstSet[ state ] < 0 ) {
+            firstSet[ state ] = System.nanoTime() - startTime;
+        }
+        visits[ state ]++;
+        stateHeld( state, delayMs );
+    }
+
+    // the state stays, and waits again before it runs
+    public void stateHeld( int state, double delayMs ) {
+        plannedMs[ state ] += delayMs;
+        pendingWait = 0;
+        waitOpen = true;
+    }
+
+    // ***********************************************************************
+    // loopPass - one loop pass for this state, waiting or working
+    // ***********************************************************************
+    // Call once at the end of each pass - the time since the last pass is counted here.
+    public void loopPass( int state, boolean waiting ) {
+        long now = System.nanoTime();
+        long took = now - lastMark;
+
+        lastMark = now;
+        loops[ state ]++;
+        if ( waiting ) {
+            pendingWait += took;
+        } else {
+            workNanos[ state ] += took;
+        }
+    }
+
+    // ***********************************************************************
+    // waitEnded - the state may run now, and this is why
+    // ***********************************************************************
+    // Only the first call after stateSet counts.
+    public void waitEnded( int state, int how ) {
+        if ( !waitOpen ) {
+            return;
+        }
+        waitOpen = false;
+        if ( how == WAIT_MET ) {
+            metNanos[ state ] += pendingWait;
+        } else if ( how == WAIT_TIMEOUT ) {
+            timeoutNanos[ state ] += pendingWait;
+            timeouts[ state ]++;
+        } else {
+            fixedNanos[ state ] += pendingWait;
+        }
+        pendingWait = 0;
+    }
+
+    // ***********************************************************************
+    // write - save this run as CSV, one line per state that was used
+    // ***********************************************************************
+    public boolean write( File file ) {
+        FileOutputStream out = null;
+        StringBuilder text = new StringBuilder(
+                "state,first_s,visits,loops,work_ms,fixed_ms,met_ms,timeout_ms,timeouts,planned_ms\n" );
+        int s;
+
+        for ( s = 0; s < names.length; s++ ) {
+            if ( visits[ s ] == 0 ) {
+                continue;
+            }
+            text.append( names[ s ] ).append( ',' )
+                    .append( String.format( "%.3f", firstSet[ s ] / 1e9 )).append( ',' )
+                    .append( visits[ s ] ).append( ',' )
+                    .append( loops[ s ] ).append( ',' )
+                    .append( workNanos[ s ] / 1000000 ).append( ',' )
+                    .append( fixedNanos[ s ] / 1000000 ).append( ',' )
+                    .append( metNanos[ s ] / 1000000 ).append( ',' )
+                    .append( timeoutNanos[ s ] / 1000000 ).append( ',' )
+                    .append( timeouts[ s ] ).append( ',' )
+                    .append( (long) plannedMs[ s ] ).append( '\n' );
+        }
+
+        try {
+            out = new FileOutputStream( file, false );
+            out.write( text.toString().getBytes() );
+            out.close();
+            out = null;
+        } catch (Exception e) {
+            // nothing much to do....
+            return false;
+        } finally {
+            if ( out != null ) {
+                try {
+                    out.close();
+                } catch (Exception e) {
+                    // already failed
+                }
+            }
+        }
+        return true;
+    }
+
+    // ***********************************************************************
+    // getSummary - a line per state used, then the totals
+    // ***********************************************************************
+    public String[] getSummary() {
+        String[] lines;
+        long totalWork = 0;
+        long totalMet = 0;
+        long totalSlack = 0;
+        int used = 0;
+        int line = 0;
+        int s;
+
+        for ( s = 0; s < names.length; s++ ) {
+            if ( visits[ s ] > 0 ) {
+                used++;
+            }
+        }
+        lines = new String[ used + 1 ];
+
+        for ( s = 0; s < names.length; s++ ) {
+            if ( visits[ s ] == 0 ) {
+                continue;
+            }
+            lines[ line++ ] = String.format( "%-30s at %5.2fs  work %5d  wait %5d (slack %5d)  loops %d%s",
+                    names[ s ], firstSet[ s ] / 1e9, workNanos[ s ] / 1000000,
+                    ( fixedNanos[ s ] + metNanos[ s ] + timeoutNanos[ s ] ) / 1000000,
+                    ( fixedNanos[ s ] + timeoutNanos[ s ] ) / 1000000, loops[ s ],
+                    ( timeouts[ s ] > 0 ) ? "  TIMED OUT x" + timeouts[ s ] : "" );
+            totalWork += workNanos[ s ];
+            totalMet += metNanos[ s ];
+            totalSlack += fixedNanos[ s ] + timeoutNanos[ s ];
+        }
+        lines[ line ] = String.format( "Run %5.2fs  work %5d ms  waiting on work %5d ms  slack %5d ms",
+                ( lastMark - startTime ) / 1e9, totalWork / 1000000, totalMet / 1000000, totalSlack / 1000000 );
+        return lines;
+    }
+}
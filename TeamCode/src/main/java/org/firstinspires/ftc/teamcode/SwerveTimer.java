@@ -0,0 +1,198 @@
+// ***********************************************************************
+// SwerveTimer
+// ***********************************************************************
+// Deadlines and timed tasks, without waiting around.
+//
+// The OpMode methods must return quickly, so the SDK can run the driver station, the stop
+// button and our other threads. Rather than sleeping until something is due, the loop code asks
+// a Deadline whether its time has come, or schedules a task here and calls poll() once per loop.
+// Due tasks run on the loop thread, inside poll().
+//
+// All times use System.nanoTime(), which is not changed by the phone clock.
+//
+//      wheelStop = timers.schedule(500, new Runnable() {
+//          @Override
+//          public void run() {
+//              stopWheels();
+//          }
+//      });
+
+package org.firstinspires.ftc.teamcode;
+
+// ***********************************************************************
+// SwerveTimer
+// ***********************************************************************
+// Class definitions
+public class SwerveTimer {
+
+    // ***********************************************************************
+    // Deadline - a point in time to check against
+    // ***********************************************************************
+    // A new Deadline is not set, and counts as expired.
+    public static class Deadline {
+        private long dueNanos;
+        private boolean set;
+
+        // due this many ms from now
+        public void start( double delayMs ) {
+            dueNanos = System.nanoTime() + (long)( delayMs * 1e6 );
+            set = true;
+        }
+
+        public void clear() {
+            set = false;
+        }
+
+        public boolean isSet() {
+            return set;
+        }
+
+        public boolean expired() {
+            return !set || ( System.nanoTime() - dueNanos >= 0 );
+        }
+
+        // time left, 0 once expired
+        public double remainingMs() {
+            long left;
+
+            if ( !set ) {
+                return 0;
+            }
+            left = dueNanos - System.nanoTime();
+            return ( left > 0 ) ? left / 1e6 : 0;
+        }
+    }
+
+    // ***********************************************************************
+    // Task - work to do when its time comes
+    // ***********************************************************************
+    public static class Task {
+        private final Runnable action;
+        private final Deadline due;
+        private boolean pending;
+
+        private Task( Runnable useAction, double delayMs ) {
+            action = useAction;
+            due = new Deadline();
+            due.start( delayMs );
+            pending = true;
+        }
+
+        public boolean isPending() {
+            return pending;
+        }
+
+        public double remainingMs() {
+            return pending ? due.remainingMs() : 0;
+        }
+
+        // do not run it at all
+        public void cancel() {
+            pending = false;
+        }
+
+        // run it now if it has not run yet, for when we cannot wait any longer
+        public void runNow() {
+            if ( pending ) {
+                pending = false;
+                action.run();
+            }
+        }
+    }
+
+    // tasks waiting to run
+    private Task[] tasks;
+    private int taskCount;
+
+    // ***********************************************************************
+    // SwerveTimer - create an empty timer
+    // ***********************************************************************
+    public SwerveTimer() {
+        tasks = new Task[ 8 ];
+        taskCount = 0;
+    }
+
+    // ***********************************************************************
+    // schedule - run an action this many ms from now
+    // ***********************************************************************
+    // The action runs in the first poll() after it is due.
+    public Task schedule( double delayMs, Runnable action ) {
+        Task newTask = new Task( action, delayMs );
+        Task[] bigger;
+
+        if ( taskCount == tasks.length ) {
+            bigger = new Task[ tasks.length * 2 ];
+            System.arraycopy( tasks, 0, bigger, 0, taskCount );
+            tasks = bigger;
+        }
+        tasks[ taskCount++ ] = newTask;
+
+        return newTask;
+    }
+
+    // ***********************************************************************
+    // poll - run every task that is due
+    // ***********************************************************************
+    // Call once per loop. Tasks scheduled by a running task wait for the next poll.
+    public void poll() {
+        int count = taskCount;
+        int t;
+
+        for ( t = 0; t < count; t++ ) {
+            if (( tasks[ t ] != null ) && tasks[ t ].pending && tasks[ t ].due.expired() ) {
+                tasks[ t ].runNow();
+            }
+        }
+        removeDone();
+    }
+
+    // ***********************************************************************
+    // runAll - run every pending task now, due or not
+    // ***********************************************************************
+    public void runAll() {
+        int count = taskCount;
+        int t;
+
+        for ( t = 0; t < count; t++ ) {
+            if ( tasks[ t ] != null ) {
+                tasks[ t ].runNow();
+            }
+        }
+        removeDone();
+    }
+
+    // ***********************************************************************
+    // cancelAll - drop every pending task
+    // ***********************************************************************
+    public void cancelAll() {
+        int t;
+
+        for ( t = 0; t < taskCount; t++ ) {
+            tasks[ t ].cancel();
+            tasks[ t ] = null;
+        }
+        taskCount = 0;
+    }
+
+    public int getPendingCount() {
+        return taskCount;
+    }
+
+    // ***********************************************************************
+    // removeDone - pack the list down to the tasks still pending
+    // ***********************************************************************
+    private void removeDone() {
+        int keep = 0;
+        int t;
+
+        for ( t = 0; t < taskCount; t++ ) {
+            if (( tasks[ t ] != null ) && tasks[ t ].pending ) {
+                tasks[ keep++ ] = tasks[ t ];
+            }
+        }
+        for ( t = keep; t < taskCount; t++ ) {
+            tasks[ t ] = null;
+        }
+        taskCount = keep;
+    }
+}
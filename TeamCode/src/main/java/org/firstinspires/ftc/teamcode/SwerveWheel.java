@@ -6,12 +6,19 @@
 //
 // Speed is 0 to 1 (never negative). Motor configuration needs to have positive as moving forward.
 //
-// Servo postion is -1 to 1. Servo configuration needs to be set so that the motion range is
-// from -180 to 180, with 0 as straight.
+// Servo postion is -1 to 1 (1.0 is 180 degrees), with 0 as straight. How far the servo can
+// really reach either side of straight, and how much of its 0 to 1 range each 180 degrees
+// takes, are set with setServoLimits - by default +/- 90 degrees over the whole range.
 //
-// Because we are building a servo-based robot, we chose to implement the code below using a
-// range of -90 to 90. We flip the sign of the speed when we adapt from values outside this
-// target range.
+// Any wheel angle can be reached as the angle itself with the speed forward, or the angle
+// +/- 180 with the speed reversed. Of the choices the servo can reach, we pick the one closest
+// to where the servo was last sent, so the wheel turns as little as possible. With a reach past
+// 90 degrees the choices overlap, so a wheel near the edge can keep going instead of swinging
+// all the way over.
+//
+// The servo has no feedback, so we estimate where it is from how fast it turns. While the wheel
+// is still far from its angle, the drive power is cut back (by the cosine of the angle left to
+// go) so the wheel does not push the robot the wrong way while it turns.
 //
 // *** DERIVED FROM ***
 // GREAT data on swerve drive design found here: https://www.chiefdelphi.com/media/papers/2426
@@ -28,6 +35,8 @@ package org.firstinspires.ftc.teamcode;
 import com.qualcomm.robotcore.hardware.DcMotor;
 import com.qualcomm.robotcore.hardware.Servo;
 
+import org.firstinspires.ftc.teamcode.FastMath;
+
 // ***********************************************************************
 // SwerveWheel
 // ***********************************************************************
@@ -35,20 +44,80 @@ import com.qualcomm.robotcore.hardware.Servo;
 public class SwerveWheel {
     DcMotor motor;
     private Servo servo;
+    // cached outputs, so repeated values are not sent to the hub again
+    private SwerveOutputCache.CachedMotor motorOut;
+    private SwerveOutputCache.CachedServo servoOut;
+
+    // where the wheel is heading (already flipped into the servo reach)
+    private double targetSpeed;
+    private double targetPosition;
+    // what was last sent to the motor and servo
+    private double curSpeed;
+    private double curPosition;
+
+    // how far either side of straight the servo can go (0.5 is 90 degrees)
+    private double maxPosition = 0.5;
+    // servo range (0 to 1) per 180 degrees of wheel
+    private double servoScale = 1.0;
+    // estimated servo position, from how fast the servo turns (range per second)
+    private double estPosition;
+    private double servoRate = 2.4;
+    private long lastApplyTime;
+    // cut the drive power back while the wheel is turning
+    private boolean scalePower = true;
 
     // ***********************************************************************
     // SwerveWheel - create a new swerve wheel unit
     // ***********************************************************************
     // Creates a new instance of a wheel, using the motor and servo provided.
-    public SwerveWheel( DcMotor useMotor, Servo useServo ){
+    // Writes to the motor and servo go through the output cache.
+    public SwerveWheel( DcMotor useMotor, Servo useServo, SwerveOutputCache outputCache ){
         this.motor  = useMotor;
         this.servo = useServo;
+        this.motorOut = outputCache.motor( useMotor );
+        this.servoOut = outputCache.servo( useServo );
 
         // stop any movement
         updateWheel( 0, 0);
     }
 
-    public void updateWheel(double newSpeed, double newPosition){
+    // ***********************************************************************
+    // setServoLimits - servo range and turning rate
+    // ***********************************************************************
+    // newMaxPosition is how far either side of straight the servo reaches (0.5 is 90 degrees).
+    // newServoScale is how much of the servo 0 to 1 range each 180 degrees takes.
+    // newServoRate is how far it turns per second (1.0 is 180 degrees), to estimate its position.
+    public synchronized void setServoLimits( double newMaxPosition, double newServoScale,
+                                             double newServoRate ) {
+        maxPosition = newMaxPosition;
+        servoScale = newServoScale;
+        servoRate = newServoRate;
+    }
+
+    // ***********************************************************************
+    // setScalePower - cut power while the wheel is turning to its angle
+    // ***********************************************************************
+    public synchronized void setScalePower( boolean newScalePower ) {
+        scalePower = newScalePower;
+    }
+
+    // ***********************************************************************
+    // updateWheel - set the wheel speed and position right away
+    // ***********************************************************************
+    public synchronized void updateWheel(double newSpeed, double newPosition){
+        setTarget( newSpeed, newPosition );
+
+        // go straight to the target
+        applyWheel( targetSpeed, targetPosition );
+    }
+
+    // ***********************************************************************
+    // setTarget - set where the wheel should end up
+    // ***********************************************************************
+    // The wheel does not change until updateWheel or stepWheel is called.
+    public synchronized void setTarget(double newSpeed, double newPosition){
+        double bestPosition;
+
         // be sure we have a valid new position
         if(( newPosition < -1.0 ) || ( newPosition > 1.0 )) {
             newPosition = 0;
@@ -57,23 +126,126 @@ public class SwerveWheel {
         if ( newSpeed < 0 ) {
             newSpeed = 0;
         }
-        // if below -90, flip 180 degrees and reverse the speed
-        if ( newPosition < -0.5 ) {
-            newSpeed = -newSpeed;
-            newPosition = newPosition + 1.0;
+        // pick the same wheel direction with the least servo travel
+        // -- each 180 degrees (1.0) of flip reverses the speed
+        bestPosition = leastTravel( newPosition, curPosition, maxPosition );
+        if ( !Double.isNaN( bestPosition )) {
+            if (( Math.round( Math.abs( bestPosition - newPosition )) & 1 ) != 0 ) {
+                newSpeed = -newSpeed;
+            }
+            newPosition = bestPosition;
         }
-        // if above 90, flip 180 degrees and reverse the speed
-        if ( newPosition > 0.5 ) {
-            newSpeed = -newSpeed;
-            newPosition = newPosition - 1.0;
+        // a stopped wheel keeps its servo where it is
+        if ( newSpeed == 0 ) {
+            newPosition = curPosition;
         }
 
-        // now set the motor power
-        motor.setPower( newSpeed );
+        targetSpeed = newSpeed;
+        targetPosition = newPosition;
+    }
+
+    // ***********************************************************************
+    // leastTravel - of the servo positions for this wheel angle, the closest one in reach
+    // ***********************************************************************
+    // The choices are the position and the position +/- 180 degrees (1.0) and 360 (2.0).
+    // NaN if none is in reach.
+    static double leastTravel( double position, double fromPosition, double reach ) {
+        double bestPosition = Double.NaN;
+        double tryPosition;
+        int flip;
+
+        for ( flip = -2; flip <= 2; flip++ ) {
+            tryPosition = position + flip;
+            if (( tryPosition < -reach ) || ( tryPosition > reach )) {
+                continue;
+            }
+            if ( Double.isNaN( bestPosition )
+                    || ( Math.abs( tryPosition - fromPosition ) < Math.abs( bestPosition - fromPosition ))) {
+                bestPosition = tryPosition;
+            }
+        }
+        return bestPosition;
+    }
+
+    // ***********************************************************************
+    // stepWheel - move the wheel one step toward its target
+    // ***********************************************************************
+    // Speed changes by at most maxSpeedStep and the servo by at most maxPositionStep.
+    public synchronized void stepWheel(double maxSpeedStep, double maxPositionStep){
+        applyWheel( curSpeed + limitStep( targetSpeed - curSpeed, maxSpeedStep ),
+                curPosition + limitStep( targetPosition - curPosition, maxPositionStep ));
+    }
+
+    // ***********************************************************************
+    // applyWheel - send speed and position to the hardware
+    // ***********************************************************************
+    private void applyWheel(double newSpeed, double newPosition){
+        double power;
+
         // if the wheel is moving, use the servo to set the position
         if (( newSpeed != 0 )) {
-            // setPosition wants 0 to 1, we are at -0.5 to +0.5, so we scale here
-            servo.setPosition( newPosition + 0.5 );
+            // setPosition wants 0 to 1, centered on straight
+            servoOut.setPosition( 0.5 + ( newPosition * servoScale ));
+            curPosition = newPosition;
+        }
+        estimateServo();
+
+        // now set the motor power, less while the wheel is still turning
+        power = newSpeed;
+        if ( scalePower ) {
+            power *= getAngleScale();
+        }
+        motorOut.setPower( power );
+        curSpeed = newSpeed;
+    }
+
+    // ***********************************************************************
+    // estimateServo - move our servo estimate toward the last position sent
+    // ***********************************************************************
+    private void estimateServo() {
+        long now = System.nanoTime();
+        double dt;
+
+        if ( lastApplyTime == 0 ) {
+            // first time, assume the servo is where it was sent
+            estPosition = curPosition;
+        } else {
+            dt = ( now - lastApplyTime ) / 1e9;
+            estPosition += limitStep( curPosition - estPosition, servoRate * dt );
+        }
+        lastApplyTime = now;
+    }
+
+    // ***********************************************************************
+    // getEstimatedPosition - where we think the servo is now (0.5 is 90 degrees)
+    // ***********************************************************************
+    public synchronized double getEstimatedPosition() {
+        return estPosition;
+    }
+
+    // ***********************************************************************
+    // getAngleScale - power scale for the angle the wheel still has to turn
+    // ***********************************************************************
+    // 1 when the wheel is at its angle, down to 0 when it is 90 degrees (or more) away.
+    public synchronized double getAngleScale() {
+        double error = Math.abs( curPosition - estPosition );
+
+        if ( error >= 0.5 ) {
+            return 0;
+        }
+        return FastMath.cos( error * Math.PI );
+    }
+
+    // ***********************************************************************
+    // limitStep - keep a change within +/- maxStep
+    // ***********************************************************************
+    private static double limitStep(double change, double maxStep){
+        if ( change > maxStep ) {
+            return maxStep;
+        }
+        if ( change < -maxStep ) {
+            return -maxStep;
         }
+        return change;
     }
 }
@@ -0,0 +1,102 @@
+// ***********************************************************************
+// SwerveWheelManager
+// ***********************************************************************
+// Moves the swerve wheels gradually toward their targets.
+//
+// When gradual changes are on, the drive code only sets a target speed and position for each
+// wheel. This task runs on its own thread at a fixed rate and steps every wheel toward its
+// target, with limits on how fast the speed and the servo angle may change.
+//
+// Ramping the power keeps the current spikes down when the driver slams a stick, and turning
+// the servos at a steady rate keeps the wheels from scrubbing across the tiles. Running at a
+// fixed rate means the ramp is the same however long the OpMode loop takes.
+
+package org.firstinspires.ftc.teamcode;
+
+// ***********************************************************************
+// SwerveWheelManager
+// ***********************************************************************
+// Class definitions
+public class SwerveWheelManager {
+
+    // wheels being managed
+    private final SwerveWheel[] wheels;
+
+    // slew limits - speed change per second (0 to 1 is full power) and servo change per second
+    private volatile double maxSpeedRate;
+    private volatile double maxPositionRate;
+
+    // thread that steps the wheels
+    private final SwerveRateRunner runner;
+    // when the last step was (0 before the first), only used by the thread
+    private long lastTime;
+
+    // ***********************************************************************
+    // SwerveWheelManager - set up management for the wheels
+    // ***********************************************************************
+    // Nothing happens until start() is called.
+    public SwerveWheelManager( SwerveWheel[] useWheels, double rateHz,
+                               double useMaxSpeedRate, double useMaxPositionRate ) {
+        wheels = useWheels;
+        runner = new SwerveRateRunner( "SwerveWheelManager", rateHz, new Runnable() {
+            @Override
+            public void run() {
+                stepWheels();
+            }
+        });
+        setSlewLimits( useMaxSpeedRate, useMaxPositionRate );
+    }
+
+    // ***********************************************************************
+    // setRate - how often the wheels are stepped
+    // ***********************************************************************
+    public void setRate( double rateHz ) {
+        runner.setRate( rateHz );
+    }
+
+    // ***********************************************************************
+    // setSlewLimits - how fast the wheels may change
+    // ***********************************************************************
+    // Speed rate is in power per second, position rate is in servo range per second
+    // (1.0 is a full 180 degree swing of the wheel).
+    public void setSlewLimits( double newMaxSpeedRate, double newMaxPositionRate ) {
+        maxSpeedRate = newMaxSpeedRate;
+        maxPositionRate = newMaxPositionRate;
+    }
+
+    public boolean isRunning() {
+        return runner.isRunning();
+    }
+
+    // ***********************************************************************
+    // start - begin managing the wheels
+    // ***********************************************************************
+    public void start() {
+        lastTime = 0;
+        runner.start();
+    }
+
+    // ***********************************************************************
+    // stop - end the management thread and wait for it
+    // ***********************************************************************
+    public void stop() {
+        runner.stop();
+    }
+
+    // ***********************************************************************
+    // stepWheels - one step of every wheel, on the management thread
+    // ***********************************************************************
+    private void stepWheels() {
+        long now = System.nanoTime();
+        double dt;
+        int w;
+
+        // use the real time step, so a late step still moves the right amount
+        dt = ( lastTime == 0 ) ? 0 : ( now - lastTime ) / 1e9;
+        lastTime = now;
+
+        for ( w = 0; w < wheels.length; w++ ) {
+            wheels[ w ].stepWheel( maxSpeedRate * dt, maxPositionRate * dt );
+        }
+    }
+}
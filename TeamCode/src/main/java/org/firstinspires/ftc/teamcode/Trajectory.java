@@ -0,0 +1,94 @@
+// ***********************************************************************
+// Trajectory
+// ***********************************************************************
+// A planned drive, as where the robot should be at even time steps.
+//
+// Each step holds the field pose (X, Y in cm, heading in degrees) and the field speed (cm/sec
+// along X and Y) at that time, as floats. The steps can sit in any FloatBuffer - an array while
+// planning, or straight out of the memory mapped TrajectoryCache file - so nothing is copied to
+// use one.
+//
+// sampleAt() gives the pose and speed at any time along the drive, in between steps it blends
+// the two steps around it. Past the end it gives the last pose, stopped.
+
+package org.firstinspires.ftc.teamcode;
+
+import java.nio.FloatBuffer;
+
+// ***********************************************************************
+// Trajectory
+// ***********************************************************************
+// Class definitions
+public class Trajectory {
+
+    // floats per step: x, y, heading, speed x, speed y
+    static final int FIELDS = 5;
+
+    private final FloatBuffer data;
+    private final int offset;
+    private final int count;
+    private final double step;
+
+    // ***********************************************************************
+    // Trajectory - count steps, step seconds apart, starting at offset in the buffer
+    // ***********************************************************************
+    public Trajectory( FloatBuffer useData, int useOffset, int useCount, double useStep ) {
+        data = useData;
+        offset = useOffset;
+        count = useCount;
+        step = useStep;
+    }
+
+    public int getCount() {
+        return count;
+    }
+    public double getStep() {
+        return step;
+    }
+    // seconds from the first step to the last
+    public double getDuration() {
+        return ( count > 1 ) ? ( count - 1 ) * step : 0;
+    }
+
+    // ***********************************************************************
+    // sampleAt - where the robot should be t seconds in, and how fast it should be going
+    // ***********************************************************************
+    // speed gets the field speed X and Y. Returns false if there are no steps.
+    public boolean sampleAt( double t, Pose2d pose, double[] speed ) {
+        double fraction;
+        int i;
+        int a;
+        int b;
+
+        if ( count == 0 ) {
+            return false;
+        }
+        if ( t >= getDuration() ) {
+            a = offset + (( count - 1 ) * FIELDS );
+            pose.set( data.get( a ), data.get( a + 1 ), data.get( a + 2 ));
+            speed[ 0 ] = 0;
+            speed[ 1 ] = 0;
+            return true;
+        }
+        if ( t < 0 ) {
+            t = 0;
+        }
+
+        fraction = t / step;
+        i = (int) fraction;
+        fraction -= i;
+        a = offset + ( i * FIELDS );
+        b = a + FIELDS;
+
+        pose.set( blend( a, b, fraction ), blend( a + 1, b + 1, fraction ),
+                HeadingController.normalize180( data.get( a + 2 )
+                        + ( HeadingController.normalize180( data.get( b + 2 ) - data.get( a + 2 )) * fraction )));
+        speed[ 0 ] = blend( a + 3, b + 3, fraction );
+        speed[ 1 ] = blend( a + 4, b + 4, fraction );
+        return true;
+    }
+
+    private double blend( int a, int b, double fraction ) {
+        return data.get( a ) + (( data.get( b ) - data.get( a )) * fraction );
+    }
+}
@@ -0,0 +1,266 @@
+// ***********************************************************************
+// TrajectoryCache
+// ***********************************************************************
+// All of our autonomous routes, planned ahead and kept in one file.
+//
+// There are only a few routes (start side by gold position), so rather than plan the drive while
+// the match runs, each route is planned once into a Trajectory and saved. init() maps the file
+// into memory and each Trajectory reads its steps straight from the mapping - at start() the
+// OpMode just picks one.
+//
+// plan() works out a trajectory from a waypoint path, by driving the PathFollower on an ideal
+// robot: the robot goes where the follower says, at the follower speed, and turns toward each
+// leg heading at a set rate.
+//
+// The file keeps a signature of everything the routes were planned from (the waypoints and the
+// drive limits). If the routes or limits change in the code, the signature no longer matches
+// and the routes are planned and saved again.
+//
+// File layout (big endian):
+//      int magic, int version, int signature, int route count
+//      per route: int first float, int step count, float step seconds
+//      the steps, Trajectory.FIELDS floats each
+
+package org.firstinspires.ftc.teamcode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// ***********************************************************************
+// TrajectoryCache
+// ***********************************************************************
+// Class definitions
+public class TrajectoryCache {
+
+    static final int MAGIC = 0x5357544a;
+    static final int VERSION = 1;
+    static final int HEADER_INTS = 4;
+    static final int ROUTE_INTS = 3;
+    static final double DEG2RAD = ( Math.PI / 180 );
+
+    private final File cacheFile;
+    private final Trajectory[] routes;
+
+    // ***********************************************************************
+    // TrajectoryCache - routeCount routes, kept in this file
+    // ***********************************************************************
+    public TrajectoryCache( File useFile, int routeCount ) {
+        cacheFile = useFile;
+        routes = new Trajectory[ routeCount ];
+    }
+
+    public int getRouteCount() {
+        return routes.length;
+    }
+    // null if that route is not planned or loaded
+    public Trajectory getRoute( int route ) {
+        return routes[ route ];
+    }
+    public void setRoute( int route, Trajectory trajectory ) {
+        routes[ route ] = trajectory;
+    }
+
+    // ***********************************************************************
+    // load - map the file, if it holds routes planned from this signature
+    // ***********************************************************************
+    // Returns false (and loads nothing) if the file is missing, damaged or out of date.
+    public boolean load( int signature ) {
+        RandomAccessFile file = null;
+        MappedByteBuffer map;
+        FloatBuffer steps;
+        int count;
+        int first;
+        int size;
+        int r;
+
+        try {
+            file = new RandomAccessFile( cacheFile, "r" );
+            map = file.getChannel().map( FileChannel.MapMode.READ_ONLY, 0, file.length() );
+
+            if (( map.getInt( 0 ) != MAGIC ) || ( map.getInt( 4 ) != VERSION )
+                    || ( map.getInt( 8 ) != signature ) || ( map.getInt( 12 ) != routes.length )) {
+                return false;
+            }
+
+            // the steps, as floats after the headers
+            map.position( 4 * ( HEADER_INTS + ( ROUTE_INTS * routes.length )));
+            steps = map.slice().asFloatBuffer();
+
+            for ( r = 0; r < routes.length; r++ ) {
+                first = map.getInt( 4 * ( HEADER_INTS + ( ROUTE_INTS * r )));
+                count = map.getInt( 4 * ( HEADER_INTS + ( ROUTE_INTS * r ) + 1 ));
+                size = count * Trajectory.FIELDS;
+                if (( first < 0 ) || ( count < 0 ) || ( first + size > steps.capacity() )) {
+                    return false;
+                }
+            }
+            for ( r = 0; r < routes.length; r++ ) {
+                first = map.getInt( 4 * ( HEADER_INTS + ( ROUTE_INTS * r )));
+                count = map.getInt( 4 * ( HEADER_INTS + ( ROUTE_INTS * r ) + 1 ));
+                routes[ r ] = new Trajectory( steps, first, count,
+                        map.getFloat( 4 * ( HEADER_INTS + ( ROUTE_INTS * r ) + 2 )));
+            }
+            return true;
+
+        } catch (Exception e) {
+            // nothing much to do.... plan them again
+            return false;
+
+        } finally {
+            // the mapping stays good once the file is closed
+            if ( file != null ) {
+                try {
+                    file.close();
+                } catch (Exception e) {
+                    // already done with it
+                }
+            }
+        }
+    }
+
+    // ***********************************************************************
+    // save - write all the routes, with the signature they were planned from
+    // ***********************************************************************
+    public boolean save( int signature ) {
+        FileOutputStream file = null;
+        ByteBuffer buffer;
+        Trajectory route;
+        Pose2d pose = new Pose2d();
+        double[] speed = new double[ 2 ];
+        int total = 0;
+        int first;
+        int r;
+        int i;
+
+        for ( r = 0; r < routes.length; r++ ) {
+            if ( routes[ r ] == null ) {
+                return false;
+            }
+            total += routes[ r ].getCount() * Trajectory.FIELDS;
+        }
+
+        buffer = ByteBuffer.allocate( 4 * ( HEADER_INTS + ( ROUTE_INTS * routes.length ) + total ));
+        buffer.putInt( MAGIC ).putInt( VERSION ).putInt( signature ).putInt( routes.length );
+        first = 0;
+        for ( r = 0; r < routes.length; r++ ) {
+            buffer.putInt( first ).putInt( routes[ r ].getCount() ).putFloat( (float) routes[ r ].getStep() );
+            first += routes[ r ].getCount() * Trajectory.FIELDS;
+        }
+        for ( r = 0; r < routes.length; r++ ) {
+            route = routes[ r ];
+            for ( i = 0; i < route.getCount(); i++ ) {
+                route.sampleAt( i * route.getStep(), pose, speed );
+                buffer.putFloat( (float) pose.x ).putFloat( (float) pose.y ).putFloat( (float) pose.heading );
+                if ( i == route.getCount() - 1 ) {
+                    // the last step is stopped
+                    buffer.putFloat( 0 ).putFloat( 0 );
+                } else {
+                    buffer.putFloat( (float) speed[ 0 ] ).putFloat( (float) speed[ 1 ] );
+                }
+            }
+        }
+
+        try {
+            file = new FileOutputStream( cacheFile, false );
+            file.write( buffer.array() );
+            file.close();
+            file = null;
+        } catch (Exception e) {
+            // nothing much to do.... the routes in memory still work
+            return false;
+        } finally {
+            if ( file != null ) {
+                try {
+                    file.close();
+                } catch (Exception e) {
+                    // already failed
+                }
+            }
+        }
+        return true;
+    }
+
+    // ***********************************************************************
+    // signature - a number that changes if any route waypoint or drive limit changes
+    // ***********************************************************************
+    public static int signature( PathFollower[] paths, double[] limits ) {
+        int hash = VERSION;
+        int p;
+        int i;
+
+        for ( p = 0; p < paths.length; p++ ) {
+            hash = ( 31 * hash ) + paths[ p ].getCount();
+            for ( i = 0; i < paths[ p ].getCount(); i++ ) {
+                hash = ( 31 * hash ) + Float.floatToIntBits( (float) paths[ p ].getX( i ));
+                hash = ( 31 * hash ) + Float.floatToIntBits( (float) paths[ p ].getY( i ));
+                hash = ( 31 * hash ) + Float.floatToIntBits( (float) paths[ p ].getHeading( i ));
+                hash = ( 31 * hash ) + Float.floatToIntBits( (float) paths[ p ].getSpeed( i ));
+            }
+        }
+        for ( i = 0; i < limits.length; i++ ) {
+            hash = ( 31 * hash ) + Float.floatToIntBits( (float) limits[ i ] );
+        }
+        return hash;
+    }
+
+    // ***********************************************************************
+    // plan - a trajectory for a waypoint path, by following it with an ideal robot
+    // ***********************************************************************
+    // step is in seconds, minSpeed in cm/sec, turnRate in degrees/sec.
+    // The plan stops at maxSteps, even if the path is not done.
+    public static Trajectory plan( PathFollower path, double step, double minSpeed,
+                                   double turnRate, int maxSteps ) {
+        float[] steps = new float[ maxSteps * Trajectory.FIELDS ];
+        Pose2d pose;
+        boolean done;
+        double speed;
+        double angle;
+        double speedX;
+        double speedY;
+        double turn;
+        int count;
+        int s;
+
+        if ( path.getCount() < 2 ) {
+            return new Trajectory( FloatBuffer.wrap( steps ), 0, 0, step );
+        }
+        pose = new Pose2d( path.getX( 0 ), path.getY( 0 ), path.getHeading( 0 ));
+        path.start();
+
+        count = 0;
+        while ( count < maxSteps ) {
+            done = path.update( pose );
+            speed = done ? 0 : Math.max( path.getMoveSpeed(), minSpeed );
+            angle = path.getMoveAngle() * DEG2RAD;
+            speedX = FastMath.sin( angle ) * speed;
+            speedY = FastMath.cos( angle ) * speed;
+
+            s = count * Trajectory.FIELDS;
+            steps[ s ] = (float) pose.x;
+            steps[ s + 1 ] = (float) pose.y;
+            steps[ s + 2 ] = (float) pose.heading;
+            steps[ s + 3 ] = (float) speedX;
+            steps[ s + 4 ] = (float) speedY;
+            count++;
+            if ( done ) {
+                break;
+            }
+
+            // move the ideal robot on to the next step
+            pose.x += speedX * step;
+            pose.y += speedY * step;
+            turn = HeadingController.normalize180( path.getTargetHeading() - pose.heading );
+            if ( Math.abs( turn ) > turnRate * step ) {
+                turn = ( turn > 0 ) ? turnRate * step : -turnRate * step;
+            }
+            pose.heading = HeadingController.normalize180( pose.heading + turn );
+        }
+
+        return new Trajectory( FloatBuffer.wrap( steps ), 0, count, step );
+    }
+}
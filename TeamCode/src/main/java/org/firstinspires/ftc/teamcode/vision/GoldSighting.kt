@@ -0,0 +1,10 @@
+package org.firstinspires.ftc.teamcode.vision
+
+/**
+ * One sighting of the gold mineral.
+ *
+ * [timeNanos] is when the camera frame was taken (System.nanoTime), so the robot pose at that
+ * moment can be looked up. [bearingDegrees] is the angle from the camera center to the gold,
+ * positive to the right, and [confidence] is the detector's confidence (0 to 1).
+ */
+class GoldSighting(val timeNanos: Long, val bearingDegrees: Double, val confidence: Float)
@@ -9,10 +9,80 @@ import org.firstinspires.ftc.robotcore.external.navigation.VuforiaLocalizer
  * Created by David Lukens on 10/31/2018.
  */
 
-class MasterVision(private val parameters: VuforiaLocalizer.Parameters, val hMap: HardwareMap, val useFlash:Boolean, val tfLiteAlgorithm: TFLiteAlgorithm) : Thread() {
+class MasterVision(private val parameters: VuforiaLocalizer.Parameters, val hMap: HardwareMap, val useFlash:Boolean, val tfLiteAlgorithm: TFLiteAlgorithm) {
     var vuforiaLocalizer: VuforiaLocalizer? = null
     val tfLite = TFLite(this)
 
+    /**
+     * Checks TensorFlow for new recognitions, no faster than [maxRateHz].
+     * It runs only while enabled - nothing is used before enable() or after disable().
+     */
+    val worker = VisionWorker("MasterVision", 10.0) { visionPass() }
+
+    /**
+     * Once the vote has kept the same winner for [settleVotes] frames, at [settleConfidence] or
+     * better, TensorFlow is turned off - the answer is clear, and the phone and the loop get the
+     * time back. While [settled] the worker only watches the camera, and turns TensorFlow back on
+     * if the scene changes by more than [sceneChangeLimit] (see [SceneWatcher]). If the watcher
+     * cannot get a frame to compare for [restCheckMs], TensorFlow is turned back on too - a rest
+     * never outlasts the check that is meant to end it.
+     */
+    var settleVotes = 10
+    var settleConfidence = 0.8
+    var sceneChangeLimit = 0.25
+    var restCheckMs = 1000.0
+    @Volatile
+    var settled = false
+        private set
+    /** How many times TensorFlow was turned off, and back on for a changed scene */
+    @Volatile
+    var settleCount = 0
+        private set
+    @Volatile
+    var wakeCount = 0
+        private set
+    /** How many of the wakes were because no frame could be compared */
+    @Volatile
+    var missedCheckCount = 0
+        private set
+
+    // when the scene was last compared while settled
+    private var lastCheckNanos = 0L
+
+    private val scene = SceneWatcher { vuforiaLocalizer }
+
+    /**
+     * The band of the picture the minerals are in, from [bandTop] to [bandBottom] as fractions of
+     * the picture height (0 is the top) - recognitions outside it are not used. These are in the
+     * picture as TensorFlow reports it, upright as on the camera monitor, not the raw camera rows.
+     * The whole picture until [setMineralBand] is called with a band measured on the monitor.
+     *
+     * This only filters the results. The SDK 4.x TFObjectDetector takes its frames straight from
+     * Vuforia and cannot be handed a cropped or smaller picture, so there is no way to cut the
+     * inference time with a crop from our side.
+     */
+    @Volatile
+    var bandTop = 0.0
+        private set
+    @Volatile
+    var bandBottom = 1.0
+        private set
+
+    fun setMineralBand(top: Double, bottom: Double) {
+        bandTop = Math.max(0.0, Math.min(top, 1.0))
+        bandBottom = Math.max(bandTop, Math.min(bottom, 1.0))
+    }
+
+    /** Is a point this far down the picture (0 to 1) inside the mineral band */
+    fun inMineralBand(fraction: Double): Boolean = fraction >= bandTop && fraction <= bandBottom
+
+    /** Most times per second we look for new recognitions */
+    var maxRateHz: Double
+        get() = worker.maxRateHz
+        set(value) {
+            worker.maxRateHz = value
+        }
+
     enum class TFLiteAlgorithm{
         INFER_LEFT,
         INFER_RIGHT,
@@ -21,8 +91,10 @@ class MasterVision(private val parameters: VuforiaLocalizer.Parameters, val hMap
 
 
     fun init() {
-        if (vuforiaLocalizer == null)
+        if (vuforiaLocalizer == null) {
             vuforiaLocalizer = ClassFactory.getInstance().createVuforia(parameters)
+            vuforiaLocalizer?.let { SceneWatcher.useFrames(it) }
+        }
         tfLite.init()
     }
 
@@ -30,29 +102,56 @@ class MasterVision(private val parameters: VuforiaLocalizer.Parameters, val hMap
         init()
         tfLite.enable()
         CameraDevice.getInstance().setFlashTorchMode(useFlash)
+        worker.start()
     }
 
     fun disable() {
+        // stop looking before TensorFlow goes away
+        worker.pause()
+        settled = false
+        scene.clear()
         tfLite.disable()
         CameraDevice.getInstance().setFlashTorchMode(false)
     }
 
     fun shutdown() {
+        worker.stop()
         disable()
         tfLite.shutdown()
     }
 
-    override fun run() {
-        try {
-            while (true) {
-                tfLite.updateSampleOrder()
+    /** One worker pass - returns true if TensorFlow had new results */
+    private fun visionPass(): Boolean {
+        if (settled) {
+            val change = scene.change()
+            val now = System.nanoTime()
+            if (change >= 0)
+                lastCheckNanos = now
+            val missed = now - lastCheckNanos > restCheckMs * 1e6
+            if (change > sceneChangeLimit || missed) {
+                // something moved, or we cannot tell - look again, and make the vote settle
+                // again before resting
+                if (missed)
+                    missedCheckCount++
+                tfLite.voter.restartStable()
+                tfLite.enable()
+                settled = false
+                wakeCount++
             }
-        } catch (ex: InterruptedException) {
-            Thread.currentThread().interrupt()
+            return false
         }
-    }
 
-    init {
-        start()
+        val newResults = tfLite.updateSampleOrder()
+        val agreed = tfLite.voter.consensus
+        if (newResults && agreed.stableVotes >= settleVotes && agreed.confidence >= settleConfidence && scene.mark()) {
+            tfLite.disable()
+            settled = true
+            settleCount++
+            lastCheckNanos = System.nanoTime()
+        }
+        return newResults
     }
+
+    val settleLog: String
+        get() = (if (settled) "settled" else "looking") + ", rested $settleCount woke $wakeCount (no check $missedCheckCount)"
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package org.firstinspires.ftc.teamcode.vision
+
+/**
+ * What the recent frames agree the sample order is.
+ *
+ * [confidence] is the winning position's share of the weighted votes (0 to 1), so 1 means every
+ * recent vote agreed. [votes] is how many frames were counted, and [timeNanos] is when the newest
+ * of them was taken (System.nanoTime) - 0 if there were none. [stableVotes] is how many votes in
+ * a row have left the winner unchanged.
+ */
+class SampleConsensus(val position: SampleRandomizedPositions, val confidence: Double, val votes: Int, val timeNanos: Long,
+                      val stableVotes: Int) {
+    override fun toString(): String =
+            String.format("%s %.0f%% of %d votes, stable %d", position, confidence * 100, votes, stableVotes)
+
+    companion object {
+        /** Nothing seen yet */
+        @JvmField
+        val NONE = SampleConsensus(SampleRandomizedPositions.UNKNOWN, 0.0, 0, 0L, 0)
+    }
+}
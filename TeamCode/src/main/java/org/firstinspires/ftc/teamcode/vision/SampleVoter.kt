@@ -0,0 +1,92 @@
+package org.firstinspires.ftc.teamcode.vision
+
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * Decides the sample order from the last few frames, rather than from whichever frame came last.
+ *
+ * Each frame that gives a sample order casts one vote, weighted by how sure the detector was
+ * (its least confident recognition) and by age - a vote loses half its weight every
+ * [halfLifeMs], and is dropped after [maxAgeMs] or once [windowSize] newer votes are in. The
+ * position with the most weight wins, and its share of the weight is the consensus confidence.
+ *
+ * Votes come from the vision thread. After each one the consensus is worked out again and
+ * published, so [consensus] can be read from the OpMode thread at any time without locking.
+ */
+class SampleVoter(private val windowSize: Int = 15, var halfLifeMs: Double = 1500.0, var maxAgeMs: Double = 4000.0) {
+    // the window, oldest overwritten first - only touched by the voting thread
+    private val voteTimes = LongArray(windowSize)
+    private val votePositions = IntArray(windowSize)
+    private val voteConfidences = FloatArray(windowSize)
+    private var voteCount = 0
+    private var nextVote = 0
+    private var stableVotes = 0
+
+    private val weights = DoubleArray(SampleRandomizedPositions.values().size)
+    private val published = AtomicReference(SampleConsensus.NONE)
+
+    /** The latest consensus - never null */
+    val consensus: SampleConsensus
+        get() = published.get()
+
+    /** Count one frame's sample order, taken at [timeNanos] (System.nanoTime) */
+    fun addVote(timeNanos: Long, position: SampleRandomizedPositions, confidence: Float) {
+        if (position == SampleRandomizedPositions.UNKNOWN)
+            return
+
+        voteTimes[nextVote] = timeNanos
+        votePositions[nextVote] = position.ordinal
+        voteConfidences[nextVote] = confidence
+        nextVote = (nextVote + 1) % windowSize
+        if (voteCount < windowSize)
+            voteCount++
+
+        published.set(tally(timeNanos))
+    }
+
+    /** Start counting [SampleConsensus.stableVotes] again from the next vote */
+    fun restartStable() {
+        stableVotes = 0
+    }
+
+    /** Forget every vote - call from the voting thread, or while vision is paused */
+    fun clear() {
+        voteCount = 0
+        nextVote = 0
+        stableVotes = 0
+        published.set(SampleConsensus.NONE)
+    }
+
+    private fun tally(now: Long): SampleConsensus {
+        val last = published.get()
+        var total = 0.0
+        var counted = 0
+        var newest = 0L
+        var best = 0
+
+        weights.fill(0.0)
+        for (v in 0 until voteCount) {
+            val ageMs = (now - voteTimes[v]) / 1e6
+            if (ageMs > maxAgeMs)
+                continue
+            val weight = voteConfidences[v] * Math.pow(0.5, Math.max(ageMs, 0.0) / halfLifeMs)
+            weights[votePositions[v]] += weight
+            total += weight
+            counted++
+            if (voteTimes[v] > newest)
+                newest = voteTimes[v]
+        }
+        if (counted == 0 || total <= 0) {
+            stableVotes = 0
+            return SampleConsensus.NONE
+        }
+
+        for (p in weights.indices) {
+            if (weights[p] > weights[best])
+                best = p
+        }
+        val position = SampleRandomizedPositions.values()[best]
+        stableVotes = if (position == last.position) stableVotes + 1 else 1
+        return SampleConsensus(position, weights[best] / total, counted, newest, stableVotes)
+    }
+}
@@ -0,0 +1,139 @@
+package org.firstinspires.ftc.teamcode.vision
+
+import com.vuforia.Frame
+import com.vuforia.Image
+import com.vuforia.PIXEL_FORMAT
+import com.vuforia.Vuforia
+import org.firstinspires.ftc.robotcore.external.function.Consumer
+import org.firstinspires.ftc.robotcore.external.function.Continuation
+import org.firstinspires.ftc.robotcore.external.navigation.VuforiaLocalizer
+
+/**
+ * Tells when the camera sees something different, without TensorFlow.
+ *
+ * Each check uses a brightness histogram of a recent Vuforia frame, built from a spread of its
+ * pixels. [mark] keeps one as the reference, and [change] says how far the latest frame has moved
+ * from it: half the summed difference of the two histograms, so 0 is the same and 1 has nothing
+ * in common. It is cheap enough to run at the vision rate while TensorFlow rests.
+ *
+ * The frames do not come from the Vuforia frame queue - TensorFlow's own frame thread waits on
+ * that queue the whole time, even while deactivated, and would get almost every frame first.
+ * Instead each check asks Vuforia for one frame of our own with getFrameOnce. The histogram is
+ * built when Vuforia hands it over, and the next check uses it. A frame older than
+ * [FRESH_NANOS] is not used, so [mark] and [change] can return "no frame" for a pass or two.
+ *
+ * The localizer must hand out RGB565 frames - see [useFrames].
+ */
+class SceneWatcher(private val localizer: () -> VuforiaLocalizer?) {
+    companion object {
+        private const val BINS = 16
+        /** Look at every SPACING'th pixel of every SPACING'th row */
+        private const val SPACING = 4
+        /** A frame is only compared if it arrived this recently */
+        private const val FRESH_NANOS = 300000000L
+
+        /** Ask Vuforia to make RGB565 frames */
+        @JvmStatic
+        fun useFrames(vuforiaLocalizer: VuforiaLocalizer) {
+            Vuforia.setFrameFormat(PIXEL_FORMAT.RGB565, true)
+        }
+    }
+
+    private val reference = FloatArray(BINS)
+    private val latest = FloatArray(BINS)
+    private var hasReference = false
+
+    // filled in on the Vuforia thread, under lock
+    private val lock = Any()
+    private val arrived = FloatArray(BINS)
+    private val counts = IntArray(BINS)
+    private var arrivedNanos = 0L
+    private var arrivedCount = 0L
+    // the last arrived frame a check used - only the worker thread touches it
+    private var usedCount = 0L
+
+    private val onFrame = Continuation.createTrivial(Consumer<Frame> { frame -> histogram(frame) })
+
+    /** Keep the latest frame as the reference - false if there was no fresh frame */
+    fun mark(): Boolean {
+        if (!newest(reference))
+            return false
+        hasReference = true
+        return true
+    }
+
+    /** How far the latest frame is from the reference, 0 to 1 - or -1 if there is nothing to compare */
+    fun change(): Double {
+        if (!hasReference || !newest(latest))
+            return -1.0
+
+        var difference = 0.0
+        for (b in 0 until BINS)
+            difference += Math.abs(latest[b] - reference[b])
+        return difference / 2
+    }
+
+    fun clear() {
+        hasReference = false
+    }
+
+    /** Copy the newest fresh histogram into [histogram], and ask for the next frame */
+    private fun newest(histogram: FloatArray): Boolean {
+        var fresh = false
+        synchronized(lock) {
+            if (arrivedCount != usedCount && System.nanoTime() - arrivedNanos <= FRESH_NANOS) {
+                System.arraycopy(arrived, 0, histogram, 0, BINS)
+                usedCount = arrivedCount
+                fresh = true
+            }
+        }
+        // asking again only replaces the request, so this is safe every pass
+        localizer()?.getFrameOnce(onFrame)
+        return fresh
+    }
+
+    /** On the Vuforia thread - build the histogram of a frame we asked for */
+    private fun histogram(frame: Frame) {
+        for (i in 0 until frame.numImages.toInt()) {
+            val image = frame.getImage(i)
+            if (image.format == PIXEL_FORMAT.RGB565) {
+                synchronized(lock) {
+                    if (fill(image)) {
+                        arrivedNanos = System.nanoTime()
+                        arrivedCount++
+                    }
+                }
+                return
+            }
+        }
+    }
+
+    private fun fill(image: Image): Boolean {
+        val pixels = image.pixels ?: return false
+        var looked = 0
+
+        counts.fill(0)
+        var row = 0
+        while (row < image.height) {
+            var offset = row * image.stride
+            val rowEnd = offset + image.width * 2
+            while (offset + 1 < rowEnd && offset + 1 < pixels.limit()) {
+                // RGB565, low byte first
+                val pixel = (pixels.get(offset).toInt() and 0xff) or ((pixels.get(offset + 1).toInt() and 0xff) shl 8)
+                val red = (pixel shr 11 and 0x1f) shl 3
+                val green = (pixel shr 5 and 0x3f) shl 2
+                val blue = (pixel and 0x1f) shl 3
+                counts[((red * 77 + green * 150 + blue * 29) shr 8) * BINS / 256]++
+                looked++
+                offset += SPACING * 2
+            }
+            row += SPACING
+        }
+        if (looked == 0)
+            return false
+
+        for (b in 0 until BINS)
+            arrived[b] = counts[b].toFloat() / looked
+        return true
+    }
+}
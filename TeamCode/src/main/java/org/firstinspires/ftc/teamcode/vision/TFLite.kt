@@ -1,6 +1,8 @@
 package org.firstinspires.ftc.teamcode.vision
 
 import org.firstinspires.ftc.robotcore.external.ClassFactory
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit
+import org.firstinspires.ftc.robotcore.external.tfod.Recognition
 import org.firstinspires.ftc.robotcore.external.tfod.TFObjectDetector
 
 /**
@@ -24,18 +26,64 @@ class TFLite(private val master: MasterVision) {
         }
     }
 
+    /** The sample order the recent frames agree on - see [voter] */
     var lastKnownSampleOrder = SampleRandomizedPositions.UNKNOWN
 
-    internal fun updateSampleOrder() {
+    /** Counts each frame's sample order, so one bad frame cannot decide it */
+    val voter = SampleVoter()
+
+    /** How long (ms) from the camera frame to its recognitions, to date each sighting */
+    var captureLatencyMs = 100.0
+
+    /** The last gold sighting, with the time of its frame - null until gold is seen */
+    @Volatile
+    var lastGoldSighting: GoldSighting? = null
+        private set
+
+    /** When (System.nanoTime) the newest frame voting for lastKnownSampleOrder was taken - 0 if never */
+    @Volatile
+    var lastSampleOrderTime = 0L
+        private set
+
+    // this frame's recognitions inside the mineral band, kept from frame to frame
+    private val inBand = ArrayList<Recognition>()
+
+    /** Use any new recognitions - returns true if there were some (a new frame was processed) */
+    internal fun updateSampleOrder(): Boolean {
         if (tfod != null) {
             val updatedRecognitions = tfod?.updatedRecognitions
             if (updatedRecognitions != null) {
-                if (updatedRecognitions.size == 3 || updatedRecognitions.size == 2) {
+                // recognitions come back a little after the frame was taken
+                val captureTime = System.nanoTime() - (captureLatencyMs * 1e6).toLong()
+
+                // minerals outside the band (in the crater, behind the field wall) are not ours -
+                // top, bottom and imageHeight are all in the upright picture, like the band
+                inBand.clear()
+                for (recognition in updatedRecognitions) {
+                    if (master.inMineralBand((recognition.top + recognition.bottom) / 2.0 / recognition.imageHeight))
+                        inBand.add(recognition)
+                }
+
+                // keep the most confident gold in this frame
+                var bestGold: GoldSighting? = null
+                for (recognition in inBand) {
+                    if (recognition.label == LABEL_GOLD_MINERAL && (bestGold == null || recognition.confidence > bestGold.confidence))
+                        bestGold = GoldSighting(captureTime, recognition.estimateAngleToObject(AngleUnit.DEGREES), recognition.confidence)
+                }
+                if (bestGold != null)
+                    lastGoldSighting = bestGold
+
+                if (inBand.size == 3 || inBand.size == 2) {
                     var goldMineralX: Int? = null
                     var silverMineral1X: Int? = null
                     var silverMineral2X: Int? = null
+                    var frameOrder = SampleRandomizedPositions.UNKNOWN
+                    // this frame's vote is only as sure as its least sure recognition
+                    var frameConfidence = 1.0f
 
-                    for (recognition in updatedRecognitions) {
+                    for (recognition in inBand) {
+                        if (recognition.confidence < frameConfidence)
+                            frameConfidence = recognition.confidence
                         if (recognition.label == LABEL_GOLD_MINERAL)
                             goldMineralX = recognition.left.toInt()
                         else if (silverMineral1X == null)
@@ -45,8 +93,8 @@ class TFLite(private val master: MasterVision) {
                     }
                     when (master.tfLiteAlgorithm) {
                         MasterVision.TFLiteAlgorithm.INFER_NONE  -> if (goldMineralX != null && silverMineral1X != null && silverMineral2X != null)
-                            if (updatedRecognitions.size == 3)
-                                lastKnownSampleOrder =
+                            if (inBand.size == 3)
+                                frameOrder =
                                         if (goldMineralX < silverMineral1X && goldMineralX < silverMineral2X)
                                             SampleRandomizedPositions.LEFT
                                         else if (goldMineralX > silverMineral1X && goldMineralX > silverMineral2X)
@@ -54,11 +102,11 @@ class TFLite(private val master: MasterVision) {
                                         else
                                             SampleRandomizedPositions.CENTER
                         MasterVision.TFLiteAlgorithm.INFER_LEFT  -> {
-                            if(updatedRecognitions.size == 2) {
+                            if(inBand.size == 2) {
                                 if (goldMineralX == null)
-                                    lastKnownSampleOrder = SampleRandomizedPositions.LEFT
+                                    frameOrder = SampleRandomizedPositions.LEFT
                                 else if (silverMineral1X != null)
-                                    lastKnownSampleOrder =
+                                    frameOrder =
                                             if (goldMineralX < silverMineral1X)
                                                 SampleRandomizedPositions.CENTER
                                             else
@@ -66,11 +114,11 @@ class TFLite(private val master: MasterVision) {
                             }
                         }
                         MasterVision.TFLiteAlgorithm.INFER_RIGHT -> {
-                            if(updatedRecognitions.size == 2) {
+                            if(inBand.size == 2) {
                                 if (goldMineralX == null)
-                                    lastKnownSampleOrder = SampleRandomizedPositions.RIGHT
+                                    frameOrder = SampleRandomizedPositions.RIGHT
                                 else if (silverMineral1X != null)
-                                    lastKnownSampleOrder =
+                                    frameOrder =
                                             if (goldMineralX < silverMineral1X)
                                                 SampleRandomizedPositions.LEFT
                                             else
@@ -78,9 +126,18 @@ class TFLite(private val master: MasterVision) {
                             }
                         }
                     }
+                    voter.addVote(captureTime, frameOrder, frameConfidence)
+
+                    val agreed = voter.consensus
+                    if (agreed.position != SampleRandomizedPositions.UNKNOWN) {
+                        lastKnownSampleOrder = agreed.position
+                        lastSampleOrderTime = agreed.timeNanos
+                    }
                 }
+                return true
             }
         }
+        return false
     }
 
     fun enable() {
@@ -0,0 +1,152 @@
+package org.firstinspires.ftc.teamcode.vision
+
+import android.os.Debug
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * Runs vision work on its own thread, no faster than [maxRateHz].
+ *
+ * Each pass calls [work] once, which returns true if it had a new frame's results to use. After
+ * a pass the thread sleeps until its next slot, so the camera and TensorFlow get the time they
+ * need without the thread spinning. While paused it waits without using any CPU.
+ *
+ * [start] begins (or resumes) the work, [pause] holds it (waiting for a pass in progress to
+ * finish), and [stop] ends the thread and waits for it to finish.
+ *
+ * A thread only keeps going while it is still [thread]. If [stop] gives up waiting on a slow
+ * pass and [start] is called again, the old thread sees it has been replaced and ends after
+ * that pass, rather than carrying on next to the new one.
+ *
+ * The counters are read from other threads, for telemetry: passes, passes with new results,
+ * late passes (work took longer than the slot), and the CPU time used by the worker thread.
+ */
+class VisionWorker(private val name: String, maxRateHz: Double, private val work: () -> Boolean) : Runnable {
+    /** Most passes per second */
+    @Volatile
+    var maxRateHz = maxRateHz
+        set(value) {
+            field = if (value > 0) value else 1.0
+        }
+
+    private val lock = ReentrantLock()
+    private val wake = lock.newCondition()
+    /** The thread that should be running, null once stopped */
+    @Volatile
+    private var thread: Thread? = null
+    @Volatile
+    private var paused = false
+
+    @Volatile
+    var passCount = 0L
+        private set
+    @Volatile
+    var resultCount = 0L
+        private set
+    @Volatile
+    var lateCount = 0L
+        private set
+    /** CPU time used by the worker thread (ns), -1 if the phone cannot tell us */
+    @Volatile
+    var cpuNanos = 0L
+        private set
+    /** Wall time the worker has been running (ns), not counting pauses */
+    @Volatile
+    var activeNanos = 0L
+        private set
+
+    val isActive: Boolean
+        get() = thread != null && !paused
+
+    fun start() {
+        lock.withLock {
+            paused = false
+            if (thread == null) {
+                val newThread = Thread(this, name)
+                newThread.isDaemon = true
+                // set before it starts, so its first check sees itself
+                thread = newThread
+                newThread.start()
+            }
+            wake.signalAll()
+        }
+    }
+
+    /** Hold the work - once this returns, no pass is running until [start] */
+    fun pause() {
+        lock.withLock {
+            paused = true
+        }
+    }
+
+    fun stop() {
+        val oldThread = lock.withLock {
+            val current = thread
+            thread = null
+            wake.signalAll()
+            current
+        }
+        if (oldThread != null) {
+            oldThread.interrupt()
+            try {
+                oldThread.join(500)
+            } catch (ex: InterruptedException) {
+                Thread.currentThread().interrupt()
+            }
+        }
+    }
+
+    /** Results per second while active */
+    val resultRate: Double
+        get() = if (activeNanos > 0) resultCount * 1e9 / activeNanos else 0.0
+
+    /** Share of one core the worker used while active, 0 to 1 (-1 if unknown) */
+    val cpuLoad: Double
+        get() = if (cpuNanos < 0) -1.0 else if (activeNanos > 0) cpuNanos.toDouble() / activeNanos else 0.0
+
+    val statsLog: String
+        get() = String.format("%s: %d passes, %d results (%.1f/s), late %d, cpu %.0f%%",
+                name, passCount, resultCount, resultRate, lateCount, cpuLoad * 100)
+
+    override fun run() {
+        val cpuStart = Debug.threadCpuTimeNanos()
+        var nextTime = System.nanoTime()
+        var passStart: Long
+        val self = Thread.currentThread()
+
+        try {
+            while (thread === self && !self.isInterrupted) {
+                passStart = System.nanoTime()
+
+                // the pass runs under the lock, so pause() cannot return in the middle of one
+                lock.withLock {
+                    while (paused && thread === self) {
+                        wake.await()
+                        // start the timing over after a pause
+                        nextTime = System.nanoTime()
+                        passStart = nextTime
+                    }
+                    if (thread === self) {
+                        if (work())
+                            resultCount++
+                        passCount++
+                    }
+                }
+                cpuNanos = if (cpuStart < 0) -1L else Debug.threadCpuTimeNanos() - cpuStart
+
+                // wait for the next slot, without drifting
+                nextTime += (1e9 / maxRateHz).toLong()
+                val waitNanos = nextTime - System.nanoTime()
+                if (waitNanos <= 0) {
+                    lateCount++
+                    nextTime = System.nanoTime()
+                } else {
+                    Thread.sleep(waitNanos / 1000000, (waitNanos % 1000000).toInt())
+                }
+                activeNanos += System.nanoTime() - passStart
+            }
+        } catch (ex: InterruptedException) {
+            // stopping
+        }
+    }
+}
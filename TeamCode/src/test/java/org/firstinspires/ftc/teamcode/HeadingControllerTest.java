@@ -0,0 +1,143 @@
+// ***********************************************************************
+// HeadingControllerTest
+// ***********************************************************************
+// Step response of the heading controller on a simulated chassis.
+//
+// The chassis turns at a rate that follows the turn power with a lag (the motors and wheels
+// take time to get going). Turning in place, it does not turn at all below a small power
+// (friction on the tiles) - while driving the wheels are already rolling, so there is none.
+// The controller runs on a simulated 20 ms loop, so the run takes no real time.
+// Each case checks rise time (10% to 90% of the step), overshoot and settle time against bounds
+// a little looser than what the gains give now, so a gain change that slows the turn fails.
+
+package org.firstinspires.ftc.teamcode;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+public class HeadingControllerTest {
+
+    // simulated chassis
+    private static final double LOOP_SECONDS = 0.02;
+    private static final double FULL_TURN_RATE = 400;     // degrees/sec at full power
+    private static final double LAG_SECONDS = 0.12;
+    private static final double STICTION = 0.04;          // no turn below this power, in place
+    private static final double RUN_SECONDS = 6;
+
+    // ***********************************************************************
+    // Response - what one step did
+    // ***********************************************************************
+    static class Response {
+        double riseSeconds = -1;
+        double overshoot;
+        double settleSeconds = -1;
+        double finalError;
+
+        @Override
+        public String toString() {
+            return String.format( "rise %.2fs  overshoot %.1f deg  settled %.2fs  final error %.1f deg",
+                    riseSeconds, overshoot, settleSeconds, finalError );
+        }
+    }
+
+    // ***********************************************************************
+    // step - turn from 0 to the target, as SwerveDrive uses the controller
+    // ***********************************************************************
+    static Response step( HeadingController controller, double target, double stiction ) {
+        Response response = new Response();
+        long now = 1000000000L;
+        double heading = 0;
+        double rate = 0;
+        double output;
+        double power;
+        double time;
+        double past;
+        double low = 0.1 * target;
+        double high = 0.9 * target;
+        double lowTime = -1;
+
+        controller.reset();
+        for ( time = 0; time < RUN_SECONDS; time += LOOP_SECONDS ) {
+            output = controller.update( target, heading, now );
+            if ( controller.isSettled() && ( response.settleSeconds < 0 )) {
+                response.settleSeconds = time;
+            }
+
+            // the chassis - turn rate follows the power, once it is past the friction
+            power = ( Math.abs( output ) < stiction ) ? 0 : output;
+            rate += ( power * FULL_TURN_RATE - rate ) * ( LOOP_SECONDS / LAG_SECONDS );
+            heading += rate * LOOP_SECONDS;
+            now += (long)( LOOP_SECONDS * 1e9 );
+
+            if (( lowTime < 0 ) && ( heading >= low )) {
+                lowTime = time;
+            }
+            if (( response.riseSeconds < 0 ) && ( heading >= high )) {
+                response.riseSeconds = time - lowTime;
+            }
+            past = heading - target;
+            if ( past > response.overshoot ) {
+                response.overshoot = past;
+            }
+        }
+        response.finalError = target - heading;
+        return response;
+    }
+
+    // the gains SwerveDrive uses for turning in place
+    private static HeadingController turnController() {
+        return new HeadingController( 0.004, 0.002, 0.0004, 0.08, 0.2 );
+    }
+
+    // and while driving
+    private static HeadingController driveController() {
+        return new HeadingController( 0.002, 0.0005, 0.0002, 0.01, 0.1 );
+    }
+
+    @Test
+    public void turnStepResponse() {
+        double[] targets = { 10, 45, 90, 170 };
+        // now: rise 0.26, 0.60, 1.00, 1.74s - settled 0.56, 1.10, 1.68, 2.68s - overshoot 0.7 - 1.4
+        double[] maxRise = { 0.4, 0.8, 1.3, 2.2 };
+        double[] maxSettle = { 0.8, 1.5, 2.2, 3.4 };
+        Response response;
+        String name;
+        int t;
+
+        for ( t = 0; t < targets.length; t++ ) {
+            response = step( turnController(), targets[ t ], STICTION );
+            name = "turn " + targets[ t ] + " deg: " + response;
+
+            assertTrue( name, ( response.riseSeconds >= 0 ) && ( response.riseSeconds <= maxRise[ t ] ));
+            assertTrue( name, ( response.settleSeconds >= 0 ) && ( response.settleSeconds <= maxSettle[ t ] ));
+            assertTrue( name, response.overshoot < 2.5 );
+            assertTrue( name, Math.abs( response.finalError ) <= 3 );
+        }
+    }
+
+    @Test
+    public void driveStepResponse() {
+        Response response = step( driveController(), 30, 0 );
+        String name = "drive 30 deg: " + response;
+
+        // now: rise 1.68s, overshoot 1.4 deg, settled 1.98s
+        assertTrue( name, ( response.riseSeconds >= 0 ) && ( response.riseSeconds <= 2.2 ));
+        assertTrue( name, ( response.settleSeconds >= 0 ) && ( response.settleSeconds <= 2.6 ));
+        assertTrue( name, response.overshoot < 2.5 );
+        assertTrue( name, Math.abs( response.finalError ) <= 3 );
+    }
+
+    // the output never passes the limit
+    @Test
+    public void outputIsLimited() {
+        HeadingController controller = turnController();
+        long now = 1000000000L;
+        int pass;
+
+        for ( pass = 0; pass < 100; pass++ ) {
+            assertTrue( Math.abs( controller.update( 180, 0, now )) <= 0.2 + 1e-9 );
+            now += 20000000L;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+// ***********************************************************************
+// MotionProfileTest
+// ***********************************************************************
+// The speed plan with the drive's limits (cm and seconds): it covers the distance, stays inside
+// the speed, acceleration and jerk limits, handles a move too short for full speed, and plans
+// nothing for no distance.
+
+package org.firstinspires.ftc.teamcode;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MotionProfileTest {
+
+    // what SwerveDrive plans with
+    private static final int SIZE = 200;
+    private static final double MAX_SPEED = 150;
+    private static final double MAX_ACCEL = 200;
+    private static final double MAX_JERK = 800;
+
+    // fine time steps to check the plan at
+    private static final int CHECKS = 4000;
+
+    // ***********************************************************************
+    // checkPlan - walk the plan in time and check it against the limits
+    // ***********************************************************************
+    // Returns the distance the planned speeds cover.
+    private static double checkPlan( MotionProfile profile, double maxSpeed, double maxAccel, double maxJerk ) {
+        double step = profile.getTotalTime() / CHECKS;
+        double area = 0;
+        double lastSpeed = 0;
+        double lastAccel = 0;
+        double speed;
+        double accel;
+        double jerk;
+        int i;
+
+        for ( i = 1; i <= CHECKS; i++ ) {
+            speed = profile.speedAtTime( i * step );
+            accel = ( speed - lastSpeed ) / step;
+
+            assertTrue( "speed " + speed, ( speed >= 0 ) && ( speed <= maxSpeed * 1.0001 ));
+            assertTrue( "accel " + accel, Math.abs( accel ) <= maxAccel * 1.02 );
+            if ( maxJerk > 0 ) {
+                // the plan is kept at SIZE points, so the jerk is only checked that finely
+                if (( i % ( CHECKS / SIZE )) == 0 ) {
+                    jerk = ( accel - lastAccel ) / ( step * CHECKS / SIZE );
+                    lastAccel = accel;
+                    assertTrue( "jerk " + jerk, Math.abs( jerk ) <= maxJerk * 1.05 );
+                }
+            }
+
+            area += 0.5 * ( speed + lastSpeed ) * step;
+            lastSpeed = speed;
+        }
+        return area;
+    }
+
+    @Test
+    public void longMoveCoversTheDistanceInsideTheLimits() {
+        MotionProfile profile = new MotionProfile( SIZE );
+
+        profile.generate( 300, MAX_SPEED, MAX_ACCEL, MAX_JERK );
+
+        assertEquals( 300, profile.getDistance(), 1e-9 );
+        assertEquals( 300, checkPlan( profile, MAX_SPEED, MAX_ACCEL, MAX_JERK ), 300 * 0.005 );
+        assertEquals( MAX_SPEED, profile.getPeakSpeed(), 1e-6 );
+        assertEquals( MAX_SPEED, profile.speedAt( 150 ), 1e-6 );
+        // trapezoid time (300/150 + 150/200) plus the S-curve time (200/800)
+        assertEquals( 2.0 + 0.75 + 0.25, profile.getTotalTime(), 1e-9 );
+    }
+
+    @Test
+    public void trapezoidWithoutJerkLimit() {
+        MotionProfile profile = new MotionProfile( SIZE );
+
+        profile.generate( 300, MAX_SPEED, MAX_ACCEL, 0 );
+
+        assertEquals( 300, checkPlan( profile, MAX_SPEED, MAX_ACCEL, 0 ), 300 * 0.005 );
+        assertEquals( 2.0 + 0.75, profile.getTotalTime(), 1e-9 );
+    }
+
+    @Test
+    public void shortMoveNeverReachesFullSpeed() {
+        MotionProfile profile = new MotionProfile( SIZE );
+
+        // full speed needs 150 * 150 / 200 = 112.5cm of speeding up and slowing down
+        profile.generate( 40, MAX_SPEED, MAX_ACCEL, MAX_JERK );
+
+        assertEquals( 40, checkPlan( profile, MAX_SPEED, MAX_ACCEL, MAX_JERK ), 40 * 0.005 );
+        assertTrue( "peak " + profile.getPeakSpeed(), profile.getPeakSpeed() < Math.sqrt( 40 * MAX_ACCEL ));
+        assertTrue( "peak " + profile.getPeakSpeed(), profile.getPeakSpeed() > 0 );
+    }
+
+    @Test
+    public void everyDistanceStaysInsideTheLimits() {
+        MotionProfile profile = new MotionProfile( SIZE );
+        // a triangle, just short of full speed, a little cruise (under the S-curve time), long
+        double[] distances = { 5, 40, 112, 127.5, 140, 300, 600 };
+        int d;
+
+        for ( d = 0; d < distances.length; d++ ) {
+            profile.generate( distances[ d ], MAX_SPEED, MAX_ACCEL, MAX_JERK );
+            assertEquals( "distance " + distances[ d ], distances[ d ],
+                    checkPlan( profile, MAX_SPEED, MAX_ACCEL, MAX_JERK ), distances[ d ] * 0.005 );
+        }
+    }
+
+    @Test
+    public void speedByDistanceMatchesSpeedByTime() {
+        MotionProfile profile = new MotionProfile( SIZE );
+        double step;
+        double travelled = 0;
+        double speed;
+        int i;
+
+        profile.generate( 120, MAX_SPEED, MAX_ACCEL, MAX_JERK );
+        step = profile.getTotalTime() / CHECKS;
+        for ( i = 1; i < CHECKS; i++ ) {
+            speed = profile.speedAtTime( i * step );
+            travelled += 0.5 * ( speed + profile.speedAtTime(( i - 1 ) * step )) * step;
+            assertEquals( "at " + travelled, speed, profile.speedAt( travelled ), 2.0 );
+        }
+        assertEquals( 0, profile.speedAt( 120 ), 0 );
+        assertEquals( 0, profile.speedAt( 500 ), 0 );
+    }
+
+    @Test
+    public void noDistancePlansNothing() {
+        MotionProfile profile = new MotionProfile( SIZE );
+
+        profile.generate( 0, MAX_SPEED, MAX_ACCEL, MAX_JERK );
+
+        assertEquals( 0, profile.getDistance(), 0 );
+        assertEquals( 0, profile.getTotalTime(), 0 );
+        assertEquals( 0, profile.getPeakSpeed(), 0 );
+        assertEquals( 0, profile.speedAt( 0 ), 0 );
+        assertEquals( 0, profile.speedAt( 10 ), 0 );
+        assertEquals( 0, profile.speedAtTime( 0.5 ), 0 );
+    }
+
+    @Test
+    public void negativeDistancePlansTheSameMove() {
+        MotionProfile forward = new MotionProfile( SIZE );
+        MotionProfile back = new MotionProfile( SIZE );
+
+        // the direction is the drive angle's job, the plan is only how far
+        forward.generate( 80, MAX_SPEED, MAX_ACCEL, MAX_JERK );
+        back.generate( -80, MAX_SPEED, MAX_ACCEL, MAX_JERK );
+
+        assertEquals( 80, back.getDistance(), 1e-9 );
+        assertEquals( forward.getTotalTime(), back.getTotalTime(), 1e-9 );
+        assertEquals( forward.speedAt( 30 ), back.speedAt( 30 ), 1e-9 );
+    }
+}
@@ -0,0 +1,65 @@
+// ***********************************************************************
+// SampleFusionTest
+// ***********************************************************************
+// Sightings only fine tune the voted sample heading, and false hits cannot pull it away.
+
+package org.firstinspires.ftc.teamcode;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SampleFusionTest {
+
+    // the same setup as SwerveAuto
+    private final SampleFusion fusion = new SampleFusion( -89, 100, 0, 15, 6 );
+    private final Pose2d robot = new Pose2d();
+
+    // a sighting of gold at this approach heading, from the robot at the origin
+    private void see( double heading, double confidence ) {
+        // the camera looks out at -89 from the robot heading
+        fusion.addSighting( robot, heading + 89, confidence );
+    }
+
+    @Test
+    public void noSightingsUsesTheVote() {
+        assertEquals( -89, fusion.approachHeading( robot, -89 ), 1e-9 );
+    }
+
+    @Test
+    public void agreeingSightingsFineTune() {
+        see( -86, 0.8 );
+        see( -87, 0.9 );
+        see( -85, 0.7 );
+        assertEquals( -86, fusion.approachHeading( robot, -89 ), 0.5 );
+    }
+
+    @Test
+    public void falseHitsAtAnotherSampleAreLeftOut() {
+        int i;
+
+        for ( i = 0; i < 5; i++ ) {
+            see( -88, 0.6 );
+        }
+        // strong hits on the left sample
+        for ( i = 0; i < 4; i++ ) {
+            see( -123, 0.95 );
+        }
+        assertEquals( -88, fusion.approachHeading( robot, -89 ), 0.5 );
+    }
+
+    @Test
+    public void aStrayNearTheVoteCannotDragTheMedian() {
+        see( -88, 0.8 );
+        see( -88, 0.8 );
+        see( -101, 0.9 );
+        assertEquals( -88, fusion.approachHeading( robot, -89 ), 0.5 );
+    }
+
+    @Test
+    public void bigCorrectionsFallBackToTheVote() {
+        see( -99, 0.9 );
+        see( -100, 0.9 );
+        assertEquals( -89, fusion.approachHeading( robot, -89 ), 1e-9 );
+    }
+}
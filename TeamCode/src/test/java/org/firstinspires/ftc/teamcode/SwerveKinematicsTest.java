@@ -0,0 +1,257 @@
+// ***********************************************************************
+// SwerveKinematicsTest
+// ***********************************************************************
+// The kinematics kernel runs on every control loop, so once it is warmed up it must not
+// allocate anything. Also checks the wheel results for a few simple moves, and that the wheels
+// get the same servo positions and motor powers as from the math SwerveDrive had before.
+//
+// SwerveDrive itself cannot be built here (it needs the IMU and the robot's file folder), so the
+// driveRobot wheel loop is copied below and run on SwerveWheels with recording motors and servos.
+
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.Servo;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SwerveKinematicsTest {
+
+    // the same shape as SwerveDrive's
+    private static final double WHEEL_BASE = 12;
+    private static final double TRACK_WIDTH = 12;
+    private static final double SWERVE_SCALE = 1 / Math.PI;
+
+    private final SwerveKinematics kinematics = new SwerveKinematics( WHEEL_BASE, TRACK_WIDTH, SWERVE_SCALE );
+    private final double[] speeds = new double[ SwerveKinematics.WHEEL_COUNT ];
+    private final double[] positions = new double[ SwerveKinematics.WHEEL_COUNT ];
+
+    // ***********************************************************************
+    // steady state - no allocation once warmed up
+    // ***********************************************************************
+    @Test
+    public void calculateAllocatesNothing() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean counter;
+        long before;
+        long after;
+        double sink = 0;
+        int pass;
+
+        Assume.assumeTrue( threads instanceof com.sun.management.ThreadMXBean );
+        counter = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue( counter.isThreadAllocatedMemorySupported() );
+        counter.setThreadAllocatedMemoryEnabled( true );
+
+        // warm up - class loading, FastMath tables and the JIT
+        for ( pass = 0; pass < 20000; pass++ ) {
+            sink += drivePass( pass );
+        }
+
+        before = counter.getThreadAllocatedBytes( Thread.currentThread().getId() );
+        for ( pass = 0; pass < 100000; pass++ ) {
+            sink += drivePass( pass );
+        }
+        after = counter.getThreadAllocatedBytes( Thread.currentThread().getId() );
+
+        assertTrue( sink > 0 );
+        // the counter read itself may cost a few bytes, but 100000 passes must not
+        assertTrue( "allocated " + ( after - before ) + " bytes", ( after - before ) < 1024 );
+    }
+
+    // one loop's worth of kinematics, with a command that keeps changing
+    private double drivePass( int pass ) {
+        double angle = ( pass % 360 ) * Math.PI / 180;
+
+        return kinematics.calculate( Math.sin( angle ), Math.cos( angle ), ( pass % 7 ) * 0.1 - 0.3,
+                speeds, positions );
+    }
+
+    // ***********************************************************************
+    // results for simple moves
+    // ***********************************************************************
+    @Test
+    public void straightAheadIsFullSpeedAllWheelsStraight() {
+        int w;
+
+        assertEquals( 1.0, kinematics.calculate( 0, 1, 0, speeds, positions ), 1e-6 );
+        for ( w = 0; w < SwerveKinematics.WHEEL_COUNT; w++ ) {
+            assertEquals( 1.0, speeds[ w ], 1e-6 );
+            assertEquals( 0.0, positions[ w ], 1e-3 );
+        }
+    }
+
+    @Test
+    public void speedsAreNormalized() {
+        int w;
+
+        assertEquals( 1.0, kinematics.calculate( 1, 1, 1, speeds, positions ), 1e-6 );
+        for ( w = 0; w < SwerveKinematics.WHEEL_COUNT; w++ ) {
+            assertTrue( speeds[ w ] <= 1.0 + 1e-9 );
+        }
+    }
+
+    @Test
+    public void turnInPlaceHasEqualSpeeds() {
+        int w;
+
+        kinematics.calculate( 0, 0, 0.5, speeds, positions );
+        for ( w = 1; w < SwerveKinematics.WHEEL_COUNT; w++ ) {
+            assertEquals( speeds[ 0 ], speeds[ w ], 1e-6 );
+        }
+    }
+
+    // ***********************************************************************
+    // same wheels as before the kinematics kernel
+    // ***********************************************************************
+    // The wheel math SwerveDrive.calculateWheels had, as it was.
+    private static double oldCalculateWheels( double movementX, double movementY, double rotationRad,
+                                              double[] speeds, double[] positions ) {
+        double driveTrainDiagonal = FastMath.sqrt( WHEEL_BASE*WHEEL_BASE + TRACK_WIDTH*TRACK_WIDTH );
+        double frontRatio = WHEEL_BASE / driveTrainDiagonal;
+        double sideRatio = TRACK_WIDTH / driveTrainDiagonal;
+        double maxSpeed;
+        int nextSpeed;
+
+        double frontX = movementX - ( rotationRad * frontRatio );
+        double backX = movementX + ( rotationRad * frontRatio );
+        double rightY = movementY + ( rotationRad * sideRatio );
+        double leftY = movementY - ( rotationRad * sideRatio );
+
+        speeds[1]    = FastMath.sqrt( FastMath.pow2( frontX ) + FastMath.pow2( rightY ));
+        positions[1] = FastMath.atan2( frontX, rightY ) * SWERVE_SCALE;
+        speeds[0]    = FastMath.sqrt( FastMath.pow2( frontX ) + FastMath.pow2( leftY ));
+        positions[0] = FastMath.atan2( frontX, leftY ) * SWERVE_SCALE;
+        speeds[3]    = FastMath.sqrt( FastMath.pow2( backX ) + FastMath.pow2( leftY ));
+        positions[3] = FastMath.atan2( backX, leftY ) * SWERVE_SCALE;
+        speeds[2]    = FastMath.sqrt( FastMath.pow2( backX ) + FastMath.pow2( rightY ));
+        positions[2] = FastMath.atan2( backX, rightY ) * SWERVE_SCALE;
+
+        maxSpeed = 0;
+        for ( nextSpeed = 0; nextSpeed < 4; nextSpeed++){
+            if (speeds[ nextSpeed ] > maxSpeed){
+                maxSpeed = speeds[ nextSpeed ];
+            }
+        }
+        if ( maxSpeed > 1 ){
+            for ( nextSpeed = 0; nextSpeed < 4; nextSpeed++){
+                speeds[ nextSpeed ] /= maxSpeed;
+            }
+            maxSpeed = 1;
+        }
+        return maxSpeed;
+    }
+
+    // ***********************************************************************
+    // Recorder - a motor or servo that keeps the last power or position sent
+    // ***********************************************************************
+    static class Recorder implements InvocationHandler {
+        double last = Double.NaN;
+
+        @Override
+        public Object invoke( Object proxy, Method method, Object[] args ) {
+            Class<?> type = method.getReturnType();
+
+            if ( method.getName().equals( "setPower" ) || method.getName().equals( "setPosition" )) {
+                last = (Double) args[ 0 ];
+            }
+            if ( type == boolean.class ) {
+                return false;
+            }
+            if ( type == int.class ) {
+                return 0;
+            }
+            if ( type == double.class ) {
+                return last;
+            }
+            return null;
+        }
+    }
+
+    // a wheel as SwerveDrive sets it up, on recording hardware
+    private static SwerveWheel recordedWheel( Recorder motor, Recorder servo ) {
+        SwerveWheel wheel = new SwerveWheel(
+                (DcMotor) Proxy.newProxyInstance( DcMotor.class.getClassLoader(), new Class<?>[] { DcMotor.class }, motor ),
+                (Servo) Proxy.newProxyInstance( Servo.class.getClassLoader(), new Class<?>[] { Servo.class }, servo ),
+                new SwerveOutputCache( 0 ));
+
+        if ( SwerveDrive.SERVO_FULL_RANGE ) {
+            wheel.setServoLimits( SwerveDrive.SERVO_REACH, SwerveDrive.SERVO_RANGE_SCALE, SwerveDrive.SERVO_RATE );
+        } else {
+            wheel.setServoLimits( 0.5, 1.0, SwerveDrive.SERVO_RATE );
+        }
+        // the power cut while turning goes by the clock, which the two sets of wheels do not share
+        wheel.setScalePower( false );
+        return wheel;
+    }
+
+    // the driveRobot wheel loop
+    private static void driveWheels( SwerveWheel[] wheels, double maxSpeed, double[] speeds, double[] positions ) {
+        int wheel;
+
+        for ( wheel = 0; wheel < wheels.length; wheel++ ) {
+            if ( maxSpeed < 0.05 ) {
+                wheels[ wheel ].updateWheel( 0, positions[ wheel ] );
+            } else {
+                wheels[ wheel ].updateWheel( speeds[ wheel ], positions[ wheel ] );
+            }
+        }
+    }
+
+    @Test
+    public void wheelsGetTheSameOutputsAsBefore() {
+        int wheels = SwerveKinematics.WHEEL_COUNT;
+        SwerveWheel[] oldWheels = new SwerveWheel[ wheels ];
+        SwerveWheel[] newWheels = new SwerveWheel[ wheels ];
+        Recorder[] oldMotors = new Recorder[ wheels ];
+        Recorder[] oldServos = new Recorder[ wheels ];
+        Recorder[] newMotors = new Recorder[ wheels ];
+        Recorder[] newServos = new Recorder[ wheels ];
+        double[] oldSpeeds = new double[ wheels ];
+        double[] oldPositions = new double[ wheels ];
+        double moveX;
+        double moveY;
+        double turnX;
+        double angle;
+        int pass;
+        int w;
+
+        for ( w = 0; w < wheels; w++ ) {
+            oldMotors[ w ] = new Recorder();
+            oldServos[ w ] = new Recorder();
+            newMotors[ w ] = new Recorder();
+            newServos[ w ] = new Recorder();
+            oldWheels[ w ] = recordedWheel( oldMotors[ w ], oldServos[ w ] );
+            newWheels[ w ] = recordedWheel( newMotors[ w ], newServos[ w ] );
+        }
+
+        // sticks all the way round, at several speeds and turns, and some near stopped
+        for ( pass = 0; pass < 2000; pass++ ) {
+            angle = ( pass * 7 % 360 ) * Math.PI / 180;
+            moveX = Math.sin( angle ) * (( pass % 5 ) * 0.25 );
+            moveY = Math.cos( angle ) * (( pass % 5 ) * 0.25 );
+            turnX = (( pass % 9 ) - 4 ) * 0.125;
+
+            // as driveRobot calls calculateWheels
+            driveWheels( oldWheels, oldCalculateWheels( moveX, moveY, turnX * Math.PI, oldSpeeds, oldPositions ),
+                    oldSpeeds, oldPositions );
+            driveWheels( newWheels, kinematics.calculate( moveX, moveY, turnX * Math.PI, speeds, positions ),
+                    speeds, positions );
+
+            for ( w = 0; w < wheels; w++ ) {
+                assertEquals( "pass " + pass + " wheel " + w + " servo", oldServos[ w ].last, newServos[ w ].last, 1e-9 );
+                assertEquals( "pass " + pass + " wheel " + w + " power", oldMotors[ w ].last, newMotors[ w ].last, 1e-9 );
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+// ***********************************************************************
+// SwerveOdometryTest
+// ***********************************************************************
+// Odometry against a simulated robot: turning in place must leave the pose where it is, and a
+// straight drive while turning must still come out as a straight line on the field.
+//
+// The simulated wheels are steered the way SwerveDrive steers them - wheel angles from
+// SwerveKinematics.calculate() - and a positive rotation command turns the heading down, as
+// the heading controller expects. A sign slip in the odometry's turn onto the field shows up as
+// the pose wandering off. One in the turn correction cancels out over the four wheels, so each
+// wheel's own move (what the slip detector and the weights work from) is checked too.
+
+package org.firstinspires.ftc.teamcode;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SwerveOdometryTest {
+
+    // the same shape as SwerveDrive's (inches), and its encoder scale
+    private static final double WHEEL_BASE = 12;
+    private static final double TRACK_WIDTH = 12;
+    private static final double CM_PER_INCH = 2.54;
+    private static final double SWERVE_SCALE = 1 / Math.PI;
+    private static final double TICKS_PER_CM = 125 / ( 6 * 2.54 * Math.PI );
+    private static final double RAD2DEG = 180 / Math.PI;
+
+    // tracking steps (the tracking thread runs at 100Hz)
+    private static final double STEP = 0.01;
+
+    private final SwerveKinematics kinematics = new SwerveKinematics( WHEEL_BASE, TRACK_WIDTH, SWERVE_SCALE );
+    private final SwerveOdometry odometry = new SwerveOdometry( kinematics, CM_PER_INCH, TICKS_PER_CM );
+    private final int wheels = SwerveKinematics.WHEEL_COUNT;
+    private final double[] ticks = new double[ wheels ];
+    private final double[] angles = new double[ wheels ];
+    // where each wheel sits on the robot (cm, +Y forward, +X right)
+    private final double[] wheelX = new double[ wheels ];
+    private final double[] wheelY = new double[ wheels ];
+    private final Pose2d pose = new Pose2d();
+    // most any wheel's move (turning taken out) was off from the robot move, in cm per step
+    private double worstModule;
+
+    // ***********************************************************************
+    // placeWheels - find each wheel on the robot from a turn in place
+    // ***********************************************************************
+    // Turning in place, a wheel points across the line to the center. With a positive rotation
+    // command the heading goes down (turning to the left), so a wheel pointing along (dx, dy)
+    // sits at radius * (dy, -dx) from the center.
+    private void placeWheels() {
+        double[] speeds = new double[ wheels ];
+        double[] positions = new double[ wheels ];
+        double radius = kinematics.getTurnRadius() * CM_PER_INCH;
+        double angle;
+        int w;
+
+        kinematics.calculate( 0, 0, 1, speeds, positions );
+        for ( w = 0; w < wheels; w++ ) {
+            angle = positions[ w ] / SWERVE_SCALE;
+            wheelX[ w ] = radius * Math.cos( angle );
+            wheelY[ w ] = -radius * Math.sin( angle );
+        }
+    }
+
+    // ***********************************************************************
+    // drive - move the simulated robot and update the odometry each step
+    // ***********************************************************************
+    // fieldSpeedX/Y in cm/s on the field, turnRate in degrees/s (heading grows toward +X).
+    private void drive( double seconds, double fieldSpeedX, double fieldSpeedY, double turnRate ) {
+        double heading = 0;
+        double midHeading;
+        double robotX;
+        double robotY;
+        double wheelSpeedX;
+        double wheelSpeedY;
+        double turn = turnRate / RAD2DEG;
+        int steps = (int) Math.round( seconds / STEP );
+        int step;
+        int w;
+
+        placeWheels();
+        odometry.update( ticks, angles, heading );
+        for ( step = 0; step < steps; step++ ) {
+            // the field move, onto the robot half way through the step
+            midHeading = ( heading + ( turnRate * STEP / 2 )) / RAD2DEG;
+            robotX = ( fieldSpeedX * Math.cos( midHeading )) - ( fieldSpeedY * Math.sin( midHeading ));
+            robotY = ( fieldSpeedX * Math.sin( midHeading )) + ( fieldSpeedY * Math.cos( midHeading ));
+
+            for ( w = 0; w < wheels; w++ ) {
+                // a wheel moves with the robot, plus its share of the turn
+                wheelSpeedX = robotX + ( turn * wheelY[ w ] );
+                wheelSpeedY = robotY - ( turn * wheelX[ w ] );
+                angles[ w ] = Math.atan2( wheelSpeedX, wheelSpeedY );
+                ticks[ w ] += Math.hypot( wheelSpeedX, wheelSpeedY ) * STEP * TICKS_PER_CM;
+            }
+            heading += turnRate * STEP;
+            odometry.update( ticks, angles, heading );
+
+            // with the turn taken out, every wheel moved the way the robot did
+            for ( w = 0; w < wheels; w++ ) {
+                worstModule = Math.max( worstModule, Math.hypot(
+                        odometry.getModuleDx( w ) - ( robotX * STEP ),
+                        odometry.getModuleDy( w ) - ( robotY * STEP )));
+            }
+        }
+        odometry.getPose( pose );
+    }
+
+    @Test
+    public void turnInPlaceStaysPut() {
+        // a full turn one way
+        drive( 2, 0, 0, 180 );
+
+        assertEquals( 0, pose.x, 0.05 );
+        assertEquals( 0, pose.y, 0.05 );
+        assertEquals( 360, pose.heading, 1e-6 );
+        assertEquals( 0, worstModule, 0.01 );
+    }
+
+    @Test
+    public void turnInPlaceTheOtherWayStaysPut() {
+        drive( 1, 0, 0, -90 );
+
+        assertEquals( 0, pose.x, 0.05 );
+        assertEquals( 0, pose.y, 0.05 );
+        assertEquals( 0, worstModule, 0.01 );
+    }
+
+    @Test
+    public void straightLineWhileTurning() {
+        // 100cm up the field while spinning half way round
+        drive( 2, 0, 50, 90 );
+
+        assertEquals( 0, pose.x, 0.5 );
+        assertEquals( 100, pose.y, 0.5 );
+        assertEquals( 100, odometry.getPathLength(), 0.5 );
+        assertEquals( 0, worstModule, 0.01 );
+    }
+
+    @Test
+    public void diagonalWhileTurningTheOtherWay() {
+        drive( 2, 30, -40, -135 );
+
+        assertEquals( 60, pose.x, 0.5 );
+        assertEquals( -80, pose.y, 0.5 );
+        assertEquals( 0, worstModule, 0.01 );
+    }
+}
@@ -0,0 +1,83 @@
+// ***********************************************************************
+// SwervePoseFilterTest
+// ***********************************************************************
+// The pose filter against a simulated straight drive, with and without a wheel slip.
+
+package org.firstinspires.ftc.teamcode;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SwervePoseFilterTest {
+
+    private static final double STEP = 0.01;
+    private static final long STEP_NANOS = 10000000L;
+
+    // ***********************************************************************
+    // drive - speed up along Y at accel (cm/s/s), odometry reading slipBy more during the slip
+    // ***********************************************************************
+    // Returns the filtered Y once the run is done; truth is in the last slot of truthY.
+    private static double drive( double accel, double slipBy, boolean flagSlip, double[] truthY ) {
+        SwervePoseFilter filter = new SwervePoseFilter();
+        Pose2d odometry = new Pose2d();
+        Pose2d filtered = new Pose2d();
+        long now = 1000000000L;
+        double speed = 0;
+        double y = 0;
+        double odometryY = 0;
+        boolean slipping;
+        int step;
+
+        // IMU Y is forward, so no axis changes (the accel is in m/s/s)
+        filter.setImuAxes( false, 1, 1, 1 );
+        for ( step = 0; step < 100; step++ ) {
+            speed += accel * STEP;
+            y += speed * STEP;
+
+            // the wheels spin up faster than the robot for a few steps
+            slipping = ( step >= 20 ) && ( step < 30 );
+            odometryY += speed * STEP + ( slipping ? slipBy / 10 : 0 );
+
+            odometry.set( 0, odometryY, 0 );
+            filter.update( now, odometry, slipping && flagSlip, true, 0, accel / 100, 0 );
+            now += STEP_NANOS;
+        }
+        filter.getPose( filtered );
+        truthY[ 0 ] = y;
+        return filtered.y;
+    }
+
+    @Test
+    public void followsOdometryWithoutSlip() {
+        double[] truth = new double[ 1 ];
+        double y = drive( 100, 0, true, truth );
+
+        assertEquals( truth[ 0 ], y, 1.0 );
+    }
+
+    @Test
+    public void flaggedSlipStaysOutOfThePose() {
+        double[] truth = new double[ 1 ];
+        double flagged = drive( 100, 10, true, truth );
+        double unflagged = drive( 100, 10, false, truth );
+
+        // the odometry is 10 cm long - the filter keeps most of that out once it is flagged
+        assertTrue( "flagged error " + ( flagged - truth[ 0 ] ), Math.abs( flagged - truth[ 0 ] ) < 3 );
+        assertTrue( Math.abs( flagged - truth[ 0 ] ) < Math.abs( unflagged - truth[ 0 ] ));
+    }
+
+    @Test
+    public void fixPositionPullsTheFilterIn() {
+        SwervePoseFilter filter = new SwervePoseFilter();
+        Pose2d odometry = new Pose2d();
+        Pose2d filtered = new Pose2d();
+
+        filter.update( 1000000000L, odometry, false, false, 0, 0, 0 );
+        filter.update( 1010000000L, odometry, false, false, 0, 0, 0 );
+        filter.fixPosition( 20, 0, 0.01 );
+        filter.getPose( filtered );
+        assertEquals( 20, filtered.x, 0.5 );
+    }
+}
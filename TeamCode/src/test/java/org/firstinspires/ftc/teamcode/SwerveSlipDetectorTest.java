@@ -0,0 +1,129 @@
+// ***********************************************************************
+// SwerveSlipDetectorTest
+// ***********************************************************************
+// The slip detector with the drive's limits: a wheel that spins, a wheel that is stuck, the
+// counts to flag and to clear, and several wheels going bad in the same update.
+
+package org.firstinspires.ftc.teamcode;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SwerveSlipDetectorTest {
+
+    // the limits SwerveDrive uses
+    private static final int FLAG_COUNT = 3;
+    private static final int CLEAR_COUNT = 5;
+    private static final double SLIP_WEIGHT = 0.1;
+
+    private SwerveSlipDetector detector;
+    private final double[] dx = new double[ SwerveSlipDetector.WHEEL_COUNT ];
+    private final double[] dy = new double[ SwerveSlipDetector.WHEEL_COUNT ];
+    private final double[] scale = new double[ SwerveSlipDetector.WHEEL_COUNT ];
+
+    @Before
+    public void setUp() {
+        detector = new SwerveSlipDetector( 0.3, 0.25, FLAG_COUNT, CLEAR_COUNT, SLIP_WEIGHT );
+    }
+
+    // every wheel moves 1cm forward, except the odd one out
+    private void check( int oddWheel, double oddMove, int times ) {
+        int w;
+        int t;
+
+        for ( t = 0; t < times; t++ ) {
+            for ( w = 0; w < SwerveSlipDetector.WHEEL_COUNT; w++ ) {
+                dx[ w ] = 0;
+                dy[ w ] = ( w == oddWheel ) ? oddMove : 1.0;
+            }
+            detector.check( dx, dy, scale );
+        }
+    }
+
+    private void assertOnlySlipping( int wheel ) {
+        int w;
+
+        for ( w = 0; w < SwerveSlipDetector.WHEEL_COUNT; w++ ) {
+            assertEquals( "wheel " + w, w == wheel, detector.isSlipping( w ));
+            assertEquals( "wheel " + w, ( w == wheel ) ? SLIP_WEIGHT : 1.0, scale[ w ], 1e-9 );
+        }
+    }
+
+    @Test
+    public void spinningWheelFlagsAfterFlagCount() {
+        check( 2, 3.0, FLAG_COUNT - 1 );
+        assertOnlySlipping( -1 );
+
+        check( 2, 3.0, 1 );
+        assertOnlySlipping( 2 );
+        assertEquals( 1, detector.getSlipEvents( 2 ));
+    }
+
+    @Test
+    public void stuckWheelFlagsAlone() {
+        // the stuck wheel pulls the others' average down too, but only it is over the limit
+        check( 1, 0.0, FLAG_COUNT );
+        assertOnlySlipping( 1 );
+        assertEquals( 1.0, detector.getResidual( 1 ), 1e-9 );
+    }
+
+    @Test
+    public void oneBadReadDoesNotFlag() {
+        check( 0, 3.0, 1 );
+        check( -1, 0, 1 );
+        check( 0, 3.0, FLAG_COUNT - 1 );
+        assertOnlySlipping( -1 );
+    }
+
+    @Test
+    public void clearsOnlyAfterClearCount() {
+        check( 3, 3.0, FLAG_COUNT );
+        assertOnlySlipping( 3 );
+
+        check( -1, 0, CLEAR_COUNT - 1 );
+        assertOnlySlipping( 3 );
+
+        // a bad read part way starts the clear count over
+        check( 3, 3.0, 1 );
+        check( -1, 0, CLEAR_COUNT - 1 );
+        assertOnlySlipping( 3 );
+
+        check( -1, 0, 1 );
+        assertOnlySlipping( -1 );
+        assertEquals( 1, detector.getSlipEvents( 3 ));
+    }
+
+    @Test
+    public void manyBadWheelsKeepTwoGood() {
+        int good;
+        int t;
+        int w;
+
+        // no two wheels agree, every update
+        for ( t = 0; t < 2 * FLAG_COUNT; t++ ) {
+            dx[ 0 ] = 0;
+            dy[ 0 ] = 1;
+            dx[ 1 ] = 4;
+            dy[ 1 ] = 0;
+            dx[ 2 ] = -4;
+            dy[ 2 ] = 3;
+            dx[ 3 ] = 0;
+            dy[ 3 ] = -6;
+            detector.check( dx, dy, scale );
+
+            good = 0;
+            for ( w = 0; w < SwerveSlipDetector.WHEEL_COUNT; w++ ) {
+                assertFalse( "wheel " + w, Double.isNaN( detector.getResidual( w )));
+                if ( !detector.isSlipping( w )) {
+                    good++;
+                }
+            }
+            assertTrue( "good wheels " + good, good >= 2 );
+        }
+        assertFalse( detector.getLog().contains( "NaN" ));
+    }
+}
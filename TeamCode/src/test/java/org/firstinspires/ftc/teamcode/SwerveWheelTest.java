@@ -0,0 +1,91 @@
+// ***********************************************************************
+// SwerveWheelTest
+// ***********************************************************************
+// Settle time of the wheel servos, with the old +/- 90 degree reach against the full reach.
+//
+// A simulated servo turns toward each new wheel angle at the servo rate. The wheel angles come
+// from a driver strafing with small corrections either side of 90 degrees, and from random
+// changes. For each change the servo position is picked by SwerveWheel.leastTravel, and the
+// settle time is how long the servo takes to get there. The full reach has to save at least
+// half the time strafing and a tenth on random changes (SERVO_FULL_RANGE turns it on).
+
+package org.firstinspires.ftc.teamcode;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SwerveWheelTest {
+
+    private static final double OLD_REACH = 0.5;
+
+    // ***********************************************************************
+    // settleSeconds - total time the servo spends turning for these wheel angles (degrees)
+    // ***********************************************************************
+    private static double settleSeconds( double[] angles, double reach ) {
+        double position = 0;
+        double target;
+        double total = 0;
+        int a;
+
+        for ( a = 0; a < angles.length; a++ ) {
+            target = SwerveWheel.leastTravel( HeadingController.normalize180( angles[ a ] ) / 180,
+                    position, reach );
+            total += Math.abs( target - position ) / SwerveDrive.SERVO_RATE;
+            position = target;
+        }
+        return total;
+    }
+
+    @Test
+    public void crossingNinetyDegreesIsASmallTurn() {
+        double from = SwerveWheel.leastTravel( 89.0 / 180, 0, SwerveDrive.SERVO_REACH );
+        double to = SwerveWheel.leastTravel( 91.0 / 180, from, SwerveDrive.SERVO_REACH );
+
+        assertEquals( 2.0, Math.abs( to - from ) * 180, 1e-6 );
+        // the old reach has to swing all the way over
+        assertEquals( 178.0, Math.abs( SwerveWheel.leastTravel( 91.0 / 180, 89.0 / 180, OLD_REACH )
+                - ( 89.0 / 180 )) * 180, 1e-6 );
+    }
+
+    @Test
+    public void alwaysInReach() {
+        double angle;
+
+        for ( angle = -180; angle <= 180; angle += 1 ) {
+            assertTrue( !Double.isNaN( SwerveWheel.leastTravel( angle / 180, 0.7, SwerveDrive.SERVO_REACH )));
+            assertTrue( !Double.isNaN( SwerveWheel.leastTravel( angle / 180, -0.7, OLD_REACH )));
+        }
+    }
+
+    @Test
+    public void settleTimeBenchmark() {
+        double[] strafe = new double[ 40 ];
+        double[] random = new double[ 500 ];
+        Random rand = new Random( 11347 );
+        double oldTime;
+        double newTime;
+        int a;
+
+        // strafing right, correcting 10 degrees either way
+        for ( a = 0; a < strafe.length; a++ ) {
+            strafe[ a ] = (( a & 1 ) == 0 ) ? 80 : 100;
+        }
+        oldTime = settleSeconds( strafe, OLD_REACH );
+        newTime = settleSeconds( strafe, SwerveDrive.SERVO_REACH );
+        // now 14.63s at +/- 90, 1.99s at +/- 135
+        assertTrue( "strafe " + oldTime + " to " + newTime, newTime < 0.5 * oldTime );
+
+        // changes of up to 60 degrees either way
+        for ( a = 0; a < random.length; a++ ) {
+            random[ a ] = (( a == 0 ) ? 0 : random[ a - 1 ] ) + ( rand.nextDouble() * 120 ) - 60;
+        }
+        oldTime = settleSeconds( random, OLD_REACH );
+        newTime = settleSeconds( random, SwerveDrive.SERVO_REACH );
+        // now 49.87s at +/- 90, 38.27s at +/- 135
+        assertTrue( "random " + oldTime + " to " + newTime, newTime < 0.9 * oldTime );
+    }
+}